@@ -0,0 +1,341 @@
+package equations;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class AutomorphismGroup {
+
+	private int order;
+	private List<List<int[]>> generators;
+	private int[][][] transversals;
+	private int[] parent;
+	private int[] partition;
+	private int[] orbitSizes;
+	private int[] scratch;
+
+	/**
+	 * Creates the trivial automorphism group of a rooted graph of the given
+	 * order, containing only the identity. Automorphisms are added with
+	 * {@link #add(int[])}.
+	 *
+	 * The group is kept as a Schreier-Sims table: for every node k other than
+	 * the root, transversals[k][j] is an automorphism that fixes the root and
+	 * all nodes below k and maps k onto j, if there is one. Every automorphism
+	 * can be written in exactly one way as a product of one element of each
+	 * level. The generators added at each level are kept as well, and the node
+	 * orbits are maintained with union-find over all generators.
+	 *
+	 * @param order
+	 *            The number of nodes of the graph.
+	 */
+	public AutomorphismGroup(int order) {
+		this.order = order;
+		generators = new ArrayList<List<int[]>>();
+		transversals = new int[order][][];
+		int[] identity = new int[order];
+		for (int i = 0; i < order; i++) {
+			identity[i] = i;
+			generators.add(new ArrayList<int[]>());
+		}
+		for (int k = 1; k < order; k++) {
+			transversals[k] = new int[order][];
+			transversals[k][k] = identity;
+		}
+		parent = identity.clone();
+		scratch = new int[order];
+	}
+
+	/**
+	 * Adds an automorphism to the group, unless it is already an element. The
+	 * automorphism must leave node 0 in place. Testing membership does not
+	 * allocate, so feeding every automorphism of a graph one by one is cheap
+	 * once a generating set has been found.
+	 *
+	 * @param automorphism
+	 *            The automorphism, mapping node i onto automorphism[i]. The
+	 *            array is copied if it is stored.
+	 * @return True if the group was extended.
+	 */
+	public boolean add(int[] automorphism) {
+		assert (automorphism.length == order && automorphism[0] == 0);
+		if (contains(automorphism, 1, scratch)) {
+			return false;
+		}
+		extend(1, automorphism.clone());
+		return true;
+	}
+
+	/**
+	 * Checks whether a permutation is an element of this group.
+	 *
+	 * @param permutation
+	 *            The permutation to be checked.
+	 * @return True if the permutation is an automorphism in this group.
+	 */
+	public boolean contains(int[] permutation) {
+		return permutation[0] == 0
+				&& contains(permutation, 1, new int[order]);
+	}
+
+	/**
+	 *
+	 * @return The number of automorphisms in this group.
+	 */
+	public long size() {
+		long size = 1;
+		for (int k = 1; k < order; k++) {
+			size *= levelSize(k);
+		}
+		return size;
+	}
+
+	/**
+	 *
+	 * @return The automorphisms that were added to extend this group, which
+	 *         together generate it.
+	 */
+	public List<int[]> getGenerators() {
+		List<int[]> result = new ArrayList<int[]>();
+		for (List<int[]> level : generators) {
+			result.addAll(level);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the nodes a node can be mapped onto by the automorphisms in
+	 * this group that leave all lower nodes in place: the basic orbit of the
+	 * node in the Schreier-Sims table.
+	 *
+	 * @param node
+	 *            The node, other than the root.
+	 * @return The nodes in the basic orbit of the node, as a bitmask.
+	 */
+	public int basicOrbit(int node) {
+		int orbit = 0;
+		for (int j = 0; j < order; j++) {
+			if (transversals[node][j] != null) {
+				orbit |= 1 << j;
+			}
+		}
+		return orbit;
+	}
+
+	/**
+	 * Returns the size of the orbit of a node under this group.
+	 *
+	 * @param node
+	 *            The node of which the orbit size is asked.
+	 * @return The number of nodes the node can be mapped onto.
+	 */
+	public int orbitSize(int node) {
+		if (orbitSizes == null) {
+			partition();
+		}
+		return orbitSizes[node];
+	}
+
+	/**
+	 * Returns the orbits of the nodes under this group.
+	 *
+	 * @return An array giving, for every node, the lowest node in its orbit.
+	 */
+	public int[] orbitPartition() {
+		if (partition == null) {
+			partition();
+		}
+		return partition;
+	}
+
+	/**
+	 * Returns the automorphisms of a graph with one node more, which is
+	 * connected to the given set of nodes, that leave the new node in place.
+	 * These are exactly the elements of this group that map the set onto
+	 * itself, extended with the new node.
+	 *
+	 * If the set is invariant under all generators, the whole group
+	 * qualifies. Otherwise the elements are walked as products of one
+	 * transversal element per level: once the elements of the first levels
+	 * are chosen, the images of their nodes are known, so every choice that
+	 * maps a node into or out of the set cuts off a whole branch.
+	 *
+	 * @param set
+	 *            A bitmask of the nodes the new node is connected to.
+	 * @return A group on one node more than this group.
+	 */
+	public AutomorphismGroup setStabilizer(int set) {
+		AutomorphismGroup result = new AutomorphismGroup(order + 1);
+		int[] extended = new int[order + 1];
+		extended[order] = order;
+		boolean invariant = true;
+		for (int[] generator : getGenerators()) {
+			for (int i = 0; i < order && invariant; i++) {
+				invariant = ((set >> i) & 1) == ((set >> generator[i]) & 1);
+			}
+		}
+		if (invariant) {
+			for (int[] generator : getGenerators()) {
+				System.arraycopy(generator, 0, extended, 0, order);
+				result.add(extended);
+			}
+			return result;
+		}
+		int[] identity = new int[order];
+		for (int i = 0; i < order; i++) {
+			identity[i] = i;
+		}
+		stabilize(1, identity, set, result, extended);
+		return result;
+	}
+
+	/**
+	 * Checks whether a permutation that fixes all nodes below the given level
+	 * is in the group, by dividing out one transversal element per level.
+	 */
+	private boolean contains(int[] permutation, int level, int[] p) {
+		System.arraycopy(permutation, 0, p, 0, order);
+		for (int k = level; k < order; k++) {
+			int[] t = transversals[k][p[k]];
+			if (t == null) {
+				return false;
+			}
+			if (t[k] != k) {
+				// p = t^-1 o p
+				for (int i = 0; i < order; i++) {
+					p[i] = inverseImage(t, p[i]);
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Adds a permutation that fixes all nodes below the given level, unless it
+	 * is already in the group, and closes the table under the Schreier
+	 * generators this creates at its own and all lower levels. Its own level
+	 * comes first, so that the table contains the new generator before any
+	 * Schreier generator can lead back to it.
+	 */
+	private void extend(int level, int[] g) {
+		if (contains(g, level, scratch)) {
+			return;
+		}
+		generators.get(level).add(g);
+		union(g);
+		for (int k = level; k >= 1; k--) {
+			int[][] transversal = transversals[k];
+			for (int j = 0; j < order; j++) {
+				if (transversal[j] != null) {
+					sift(k, compose(g, transversal[j]));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Places a permutation that fixes all nodes below the given level in the
+	 * table: either it maps the level's node somewhere new and becomes a
+	 * transversal element, or it is divided by the existing one and passed on
+	 * to the next level.
+	 */
+	private void sift(int level, int[] g) {
+		int j = g[level];
+		int[] t = transversals[level][j];
+		if (t != null) {
+			if (level + 1 < order) {
+				extend(level + 1, compose(invert(t), g));
+			}
+			return;
+		}
+		transversals[level][j] = g;
+		for (int k = level; k < order; k++) {
+			for (int[] generator : new ArrayList<int[]>(generators.get(k))) {
+				sift(level, compose(generator, g));
+			}
+		}
+	}
+
+	private void stabilize(int level, int[] q, int set,
+			AutomorphismGroup result, int[] extended) {
+		if (level >= order) {
+			System.arraycopy(q, 0, extended, 0, order);
+			result.add(extended);
+			return;
+		}
+		for (int[] t : transversals[level]) {
+			if (t != null
+					&& ((set >> level) & 1) == ((set >> q[t[level]]) & 1)) {
+				stabilize(level + 1, compose(q, t), set, result, extended);
+			}
+		}
+	}
+
+	private int levelSize(int k) {
+		int n = 0;
+		for (int[] t : transversals[k]) {
+			if (t != null) {
+				n++;
+			}
+		}
+		return n;
+	}
+
+	private void union(int[] g) {
+		for (int i = 0; i < order; i++) {
+			int a = find(i);
+			int b = find(g[i]);
+			if (a != b) {
+				parent[Math.max(a, b)] = Math.min(a, b);
+			}
+		}
+		partition = null;
+		orbitSizes = null;
+	}
+
+	private int find(int i) {
+		while (parent[i] != i) {
+			parent[i] = parent[parent[i]];
+			i = parent[i];
+		}
+		return i;
+	}
+
+	private void partition() {
+		int[] p = new int[order];
+		int[] sizes = new int[order];
+		for (int i = 0; i < order; i++) {
+			p[i] = find(i);
+			sizes[p[i]]++;
+		}
+		for (int i = 0; i < order; i++) {
+			sizes[i] = sizes[p[i]];
+		}
+		orbitSizes = sizes;
+		partition = p;
+	}
+
+	private int[] compose(int[] a, int[] b) {
+		int[] c = new int[order];
+		for (int i = 0; i < order; i++) {
+			c[i] = a[b[i]];
+		}
+		return c;
+	}
+
+	private int[] invert(int[] a) {
+		int[] c = new int[order];
+		for (int i = 0; i < order; i++) {
+			c[a[i]] = i;
+		}
+		return c;
+	}
+
+	private static int inverseImage(int[] t, int x) {
+		for (int i = 0; i < t.length; i++) {
+			if (t[i] == x) {
+				return i;
+			}
+		}
+		return -1;
+	}
+}
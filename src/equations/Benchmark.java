@@ -0,0 +1,207 @@
+package equations;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+public class Benchmark {
+
+	/**
+	 * One stage of the generation pipeline, run once per operation.
+	 */
+	private interface Stage {
+		/**
+		 * Runs the stage once for the given order.
+		 *
+		 * @return Any value depending on the work done, so that it cannot be
+		 *         optimized away.
+		 */
+		long run(OrbitCatalog catalog, int order) throws IOException;
+	}
+
+	private static final String[] NAMES = { "calculateSymmetry",
+			"generateNext", "identifyOrbit", "generateEquations",
+			"EquationManager.toString" };
+
+	private static final Stage[] STAGES = {
+			// all orbits of the order, with an empty symmetry cache
+			new Stage() {
+				@Override
+				public long run(OrbitCatalog catalog, int order) {
+					SymmetryCache.resetShared(SymmetryCache.DEFAULT_CAPACITY);
+					long sum = 0;
+					for (OrbitRepresentative g : catalog.getOrbitsOfOrder(order)) {
+						OrbitRepresentative h = new OrbitRepresentative(
+								g.getAdjacency(), order);
+						h.calculateSymmetry();
+						sum += h.orbitSize(order - 1);
+					}
+					return sum;
+				}
+			},
+			// all orbits of one order lower, adding a node connected to x
+			new Stage() {
+				@Override
+				public long run(OrbitCatalog catalog, int order) {
+					SymmetryCache.resetShared(SymmetryCache.DEFAULT_CAPACITY);
+					long sum = 0;
+					List<Integer> root = Arrays.asList(0);
+					for (OrbitRepresentative g : catalog
+							.getOrbitsOfOrder(order - 1)) {
+						OrbitRepresentative h = new OrbitRepresentative(
+								g.getAdjacency(), order - 1, catalog);
+						sum += h.generateNext(root).size();
+					}
+					return sum;
+				}
+			},
+			// all orbits of the order, from scratch
+			new Stage() {
+				@Override
+				public long run(OrbitCatalog catalog, int order) {
+					long sum = 0;
+					for (OrbitRepresentative g : catalog.getOrbitsOfOrder(order)) {
+						sum += catalog.identifyOrbit(new OrbitRepresentative(g
+								.getAdjacency(), order));
+					}
+					return sum;
+				}
+			},
+			new Stage() {
+				@Override
+				public long run(OrbitCatalog catalog, int order) {
+					SymmetryCache.resetShared(SymmetryCache.DEFAULT_CAPACITY);
+					return Program.generateEquations(catalog, order, 1)
+							.getEqu().length;
+				}
+			},
+			// the output of equations generated beforehand
+			new Stage() {
+				@Override
+				public long run(OrbitCatalog catalog, int order)
+						throws IOException {
+					StringWriter out = new StringWriter();
+					EquationWriter writer = new EquationWriter(out);
+					writer.write(managers[order], EquationWriter.Format.PLAIN);
+					writer.flush();
+					return out.getBuffer().length();
+				}
+			} };
+
+	private static EquationManager[] managers = new EquationManager[CanonicalLabeling.MAX_ORDER + 1];
+	private static volatile long sink;
+
+	/**
+	 * Measures the main stages of the generation pipeline and prints, for
+	 * every stage and order, the mean time per operation, the sample standard
+	 * deviation of the times of the measured operations and the number of
+	 * bytes allocated per operation (the equivalent of gc.alloc.rate.norm).
+	 * Every stage is first run a number of times to warm up, then measured
+	 * over the same number of operations.
+	 *
+	 * One operation is: calculating the symmetry of all orbits of the order
+	 * with an empty symmetry cache; generateNext with x connected for all
+	 * orbits of one order lower, again with an empty cache; identifying all
+	 * orbits of the order from scratch; generating all equations of the order
+	 * on one thread; and writing those equations in plain text.
+	 *
+	 * The results of a run on a reference machine are kept in
+	 * benchmarks/baseline.txt, so that later changes can be compared with
+	 * them.
+	 *
+	 * @param args
+	 *            Optionally, the catalog (Orbits.txt by default), followed by
+	 *            "orders=4,5,6", "warmup=n", "iterations=n" and the names of
+	 *            the stages to run.
+	 */
+	public static void main(String[] args) throws IOException {
+		String filename = "Orbits.txt";
+		int[] orders = { 4, 5, 6 };
+		int warmup = 10;
+		int iterations = 20;
+		List<String> stages = new ArrayList<String>();
+		for (String arg : args) {
+			if (arg.startsWith("orders=")) {
+				String[] parts = arg.substring(7).split(",");
+				orders = new int[parts.length];
+				for (int i = 0; i < parts.length; i++) {
+					orders[i] = Integer.parseInt(parts[i]);
+				}
+			} else if (arg.startsWith("warmup=")) {
+				warmup = Integer.parseInt(arg.substring(7));
+			} else if (arg.startsWith("iterations=")) {
+				iterations = Integer.parseInt(arg.substring(11));
+			} else if (Arrays.asList(NAMES).contains(arg)) {
+				stages.add(arg);
+			} else {
+				filename = arg;
+			}
+		}
+		int maxOrder = 0;
+		for (int order : orders) {
+			maxOrder = Math.max(maxOrder, order);
+		}
+		OrbitCatalog catalog = new OrbitCatalog(filename, maxOrder);
+		for (int order : orders) {
+			managers[order] = Program.generateEquations(catalog, order, 1);
+		}
+		System.out.println(String.format(Locale.ROOT, "%-26s %5s %12s %10s %14s",
+				"Benchmark", "Order", "ms/op", "stddev", "B/op"));
+		for (int s = 0; s < STAGES.length; s++) {
+			if (!stages.isEmpty() && !stages.contains(NAMES[s])) {
+				continue;
+			}
+			for (int order : orders) {
+				measure(NAMES[s], STAGES[s], catalog, order, warmup,
+						iterations);
+			}
+		}
+	}
+
+	private static void measure(String name, Stage stage,
+			OrbitCatalog catalog, int order, int warmup, int iterations)
+			throws IOException {
+		for (int i = 0; i < warmup; i++) {
+			sink += stage.run(catalog, order);
+		}
+		double[] times = new double[iterations];
+		long allocated = 0;
+		for (int i = 0; i < iterations; i++) {
+			long bytes = allocatedBytes();
+			long start = System.nanoTime();
+			sink += stage.run(catalog, order);
+			times[i] = (System.nanoTime() - start) / 1e6;
+			allocated += allocatedBytes() - bytes;
+		}
+		double mean = 0;
+		for (double t : times) {
+			mean += t / iterations;
+		}
+		double variance = 0;
+		for (double t : times) {
+			variance += (t - mean) * (t - mean) / Math.max(1, iterations - 1);
+		}
+		System.out.println(String.format(Locale.ROOT,
+				"%-26s %5d %12.3f %10.3f %14s", name, order, mean,
+				Math.sqrt(variance), allocatedBytes() < 0 ? "n/a" : String
+						.valueOf(allocated / iterations)));
+	}
+
+	/**
+	 * Returns the number of bytes allocated by the current thread so far, or
+	 * -1 if the JVM cannot tell.
+	 */
+	private static long allocatedBytes() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) threads)
+					.getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+}
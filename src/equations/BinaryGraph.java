@@ -0,0 +1,309 @@
+package equations;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class BinaryGraph {
+
+	/**
+	 * The first four bytes of every binary graph: "CSRG".
+	 */
+	public static final int MAGIC = 0x43535247;
+
+	/**
+	 * The version of the format, to be raised whenever the layout changes.
+	 */
+	public static final int VERSION = 1;
+
+	private static final int HEADER = 16;
+
+	/**
+	 * The number of bytes written to the file at once.
+	 */
+	private static final int BUFFER = 1 << 20;
+
+	private BinaryGraph() {
+	}
+
+	/**
+	 * Maps a binary graph into memory. Nothing is copied: the neighbours of
+	 * all nodes stay in the mapped file, outside the heap, and are read from
+	 * the page cache when they are first used, so that a graph counted
+	 * repeatedly is opened at once.
+	 *
+	 * The file is written in little-endian byte order, which is the order of
+	 * the processors this normally runs on, so that mapped numbers are read
+	 * without swapping bytes. It starts with the magic number, the version,
+	 * the number of nodes n and the number of entries m in the neighbour
+	 * lists, twice the number of edges. Next come, for every node, its number
+	 * in the original graph; for every node and one more, the position of its
+	 * first neighbour; and the sorted neighbours of all nodes.
+	 *
+	 * @param filename
+	 *            The name of the binary graph.
+	 * @return The graph, of which the nodes are numbered by decreasing degree.
+	 * @throws IOException
+	 *             If the file cannot be read or is not a binary graph of this
+	 *             version.
+	 */
+	public static Graph map(String filename) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(filename, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			if (channel.size() < HEADER) {
+				throw new IOException(filename + " is not a binary graph");
+			}
+			ByteBuffer header = map(channel, 0, HEADER);
+			if (header.getInt(0) != MAGIC) {
+				throw new IOException(filename + " is not a binary graph");
+			}
+			if (header.getInt(4) != VERSION) {
+				throw new IOException(filename + " has graph version "
+						+ header.getInt(4) + " instead of " + VERSION);
+			}
+			int nodes = header.getInt(8);
+			int entries = header.getInt(12);
+			if (nodes < 0 || entries < 0) {
+				throw new IOException(filename + " is not a binary graph");
+			}
+			if (4L * (nodes + 1) > Integer.MAX_VALUE) {
+				throw new IOException(filename + " has too many nodes to map");
+			}
+			long neighbours = HEADER + 8L * nodes + 4;
+			if (channel.size() != neighbours + 4L * entries) {
+				throw new IOException(filename + " is truncated");
+			}
+			IntBuffer labels = map(channel, HEADER, 4L * nodes).asIntBuffer();
+			IntBuffer offsets = map(channel, HEADER + 4L * nodes,
+					4L * (nodes + 1)).asIntBuffer();
+			if (offsets.get(nodes) != entries) {
+				throw new IOException(filename + " is not a binary graph");
+			}
+			IntBuffer[] segments = new IntBuffer[Math.max(1,
+					(entries + Graph.SEGMENT_MASK) >>> Graph.SEGMENT_SHIFT)];
+			for (int s = 0; s < segments.length; s++) {
+				long from = (long) s << Graph.SEGMENT_SHIFT;
+				long length = Math.min(Graph.SEGMENT_MASK + 1, entries - from);
+				segments[s] = map(channel, neighbours + 4 * from, 4 * length)
+						.asIntBuffer();
+			}
+			return new Graph(offsets, segments, labels);
+		} finally {
+			file.close();
+		}
+	}
+
+	private static ByteBuffer map(FileChannel channel, long position,
+			long size) throws IOException {
+		return channel.map(FileChannel.MapMode.READ_ONLY, position, size)
+				.order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * Checks whether a file starts with the magic number of a binary graph.
+	 *
+	 * @param filename
+	 *            The name of the file to be checked.
+	 * @return True if the file looks like a binary graph.
+	 */
+	public static boolean isBinaryGraph(String filename) {
+		File file = new File(filename);
+		if (file.length() < HEADER) {
+			return false;
+		}
+		try {
+			DataInputStream in = new DataInputStream(new FileInputStream(file));
+			try {
+				return Integer.reverseBytes(in.readInt()) == MAGIC;
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Reads a text edge list, in the format of {@link Graph#read(String)},
+	 * with several threads, each parsing its own chunks of the file.
+	 *
+	 * @param filename
+	 *            The name of the edge list.
+	 * @param parallelism
+	 *            The number of threads to use.
+	 * @return The graph in the file.
+	 * @throws IOException
+	 *             If the file cannot be read or a line is not an edge.
+	 */
+	public static Graph parse(String filename, int parallelism)
+			throws IOException {
+		RandomAccessFile file = new RandomAccessFile(filename, "r");
+		int chunks;
+		int[][] edges;
+		int[] lengths;
+		int[] nodes;
+		AtomicReference<IOException> failure = new AtomicReference<IOException>();
+		try {
+			FileChannel channel = file.getChannel();
+			chunks = (int) ((channel.size() + EdgeListTask.CHUNK - 1) / EdgeListTask.CHUNK);
+			edges = new int[chunks][];
+			lengths = new int[chunks];
+			nodes = new int[chunks];
+			EdgeListTask task = new EdgeListTask(channel, filename, edges,
+					lengths, nodes, failure);
+			if (parallelism <= 1) {
+				task.invoke();
+			} else {
+				ForkJoinPool pool = new ForkJoinPool(parallelism);
+				try {
+					pool.invoke(task);
+				} finally {
+					pool.shutdown();
+				}
+			}
+		} finally {
+			file.close();
+		}
+		if (failure.get() != null) {
+			throw failure.get();
+		}
+		long length = 0;
+		int highest = 0;
+		for (int c = 0; c < chunks; c++) {
+			length += lengths[c];
+			highest = Math.max(highest, nodes[c]);
+		}
+		if (length > Integer.MAX_VALUE - 8) {
+			throw new IOException(filename + " has too many edges");
+		}
+		int[] all = new int[(int) length];
+		int n = 0;
+		for (int c = 0; c < chunks; c++) {
+			System.arraycopy(edges[c], 0, all, n, lengths[c]);
+			n += lengths[c];
+			edges[c] = null;
+		}
+		return new Graph(highest, all, n);
+	}
+
+	/**
+	 * Writes a graph as a binary graph that can be mapped by
+	 * {@link #map(String)}. The nodes are numbered by decreasing degree, so
+	 * that the hubs come first and share the pages that hold them; nodes of
+	 * equal degree keep their order. The original numbers are written along,
+	 * see {@link Graph#label(int)}.
+	 *
+	 * @param graph
+	 *            The graph to be written.
+	 * @param filename
+	 *            The name of the binary graph to be written.
+	 * @throws IOException
+	 *             If the file cannot be written.
+	 */
+	public static void write(Graph graph, String filename) throws IOException {
+		int n = graph.size();
+		int highest = 0;
+		for (int v = 0; v < n; v++) {
+			highest = Math.max(highest, graph.degree(v));
+		}
+		// sort the nodes by decreasing degree by counting
+		int[] first = new int[highest + 2];
+		for (int v = 0; v < n; v++) {
+			first[highest - graph.degree(v) + 1]++;
+		}
+		for (int d = 1; d < first.length; d++) {
+			first[d] += first[d - 1];
+		}
+		int[] order = new int[n];
+		int[] rank = new int[n];
+		for (int v = 0; v < n; v++) {
+			int r = first[highest - graph.degree(v)]++;
+			order[r] = v;
+			rank[v] = r;
+		}
+		RandomAccessFile file = new RandomAccessFile(filename, "rw");
+		try {
+			file.setLength(0);
+			FileChannel channel = file.getChannel();
+			ByteBuffer out = ByteBuffer.allocateDirect(BUFFER).order(
+					ByteOrder.LITTLE_ENDIAN);
+			int entries = 2 * (int) graph.edges();
+			out.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(entries);
+			for (int r = 0; r < n; r++) {
+				out = put(channel, out, graph.label(order[r]));
+			}
+			int offset = 0;
+			for (int r = 0; r < n; r++) {
+				out = put(channel, out, offset);
+				offset += graph.degree(order[r]);
+			}
+			out = put(channel, out, offset);
+			int[] row = new int[highest];
+			for (int r = 0; r < n; r++) {
+				int v = order[r];
+				int degree = graph.degree(v);
+				for (int i = 0; i < degree; i++) {
+					row[i] = rank[graph.neighbour(v, i)];
+				}
+				Arrays.sort(row, 0, degree);
+				for (int i = 0; i < degree; i++) {
+					out = put(channel, out, row[i]);
+				}
+			}
+			flush(channel, out);
+		} finally {
+			file.close();
+		}
+	}
+
+	private static ByteBuffer put(FileChannel channel, ByteBuffer out,
+			int value) throws IOException {
+		if (!out.hasRemaining()) {
+			flush(channel, out);
+		}
+		return out.putInt(value);
+	}
+
+	private static void flush(FileChannel channel, ByteBuffer out)
+			throws IOException {
+		out.flip();
+		while (out.hasRemaining()) {
+			channel.write(out);
+		}
+		out.clear();
+	}
+
+	/**
+	 * Converts a text edge list to a binary graph, which
+	 * {@link Graph#read(String)} and the counting programs map instead of
+	 * parsing.
+	 *
+	 * @param args
+	 *            The name of the edge list and the name of the binary graph
+	 *            to be written. Optionally, "threads=n" sets the number of
+	 *            threads parsing the edge list.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.out.println("Usage: BinaryGraph <edge list> <binary graph> [threads=n]");
+			return;
+		}
+		int parallelism = Runtime.getRuntime().availableProcessors();
+		if (args.length > 2 && args[2].startsWith("threads="))
+			parallelism = Integer.parseInt(args[2].substring(8));
+		Graph graph = parse(args[0], parallelism);
+		write(graph, args[1]);
+		System.out.println(graph.size() + " nodes, " + graph.edges()
+				+ " edges");
+	}
+}
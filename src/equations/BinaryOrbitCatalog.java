@@ -0,0 +1,331 @@
+package equations;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+public class BinaryOrbitCatalog {
+
+	/**
+	 * The first four bytes of every binary catalog: "ORBC".
+	 */
+	public static final int MAGIC = 0x4F524243;
+
+	/**
+	 * The version of the format, to be raised whenever the layout or the
+	 * canonical codes change.
+	 */
+	public static final int VERSION = 1;
+
+	private static final int HEADER = 16 + 4 * (CanonicalLabeling.MAX_ORDER + 1);
+	private static final int RECORD = 40;
+	private static final int PARTITION = 16;
+
+	private ByteBuffer buffer;
+	private OrbitCatalog catalog;
+	private int size;
+	private int[] firstOfOrder;
+	private AtomicReferenceArray<long[]> codesPerOrder;
+	private AtomicReferenceArray<int[]> idsPerOrder;
+	private AtomicReferenceArray<List<OrbitRepresentative>> orbitsPerOrder;
+
+	/**
+	 * Opens a binary catalog by mapping it into memory. Only the header is
+	 * read; orbits are read from the mapped file when they are first asked
+	 * for.
+	 *
+	 * The file starts with the magic number, the version, the number of orbits
+	 * and the highest order, followed by the number of orbits of every order
+	 * from 0 to {@link CanonicalLabeling#MAX_ORDER}. Next come the orbits,
+	 * ordered by number, in records of 40 bytes: the number, the order, the
+	 * adjacency bitmask, the canonical code and, for every node, the lowest
+	 * node in its sub-orbit.
+	 *
+	 * @param filename
+	 *            The name of the binary catalog.
+	 * @throws IOException
+	 *             If the file cannot be read or is not a binary catalog of
+	 *             this version.
+	 */
+	public BinaryOrbitCatalog(String filename) throws IOException {
+		this(filename, null);
+	}
+
+	/**
+	 * Opens a binary catalog on behalf of an {@link OrbitCatalog}, to which
+	 * the orbits read from it will belong.
+	 */
+	BinaryOrbitCatalog(String filename, OrbitCatalog catalog)
+			throws IOException {
+		this.catalog = catalog;
+		RandomAccessFile file = new RandomAccessFile(filename, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY,
+					0, channel.size());
+			buffer = mapped;
+		} finally {
+			file.close();
+		}
+		if (buffer.capacity() < HEADER || buffer.getInt(0) != MAGIC) {
+			throw new IOException(filename + " is not a binary orbit catalog");
+		}
+		if (buffer.getInt(4) != VERSION) {
+			throw new IOException(filename + " has catalog version "
+					+ buffer.getInt(4) + " instead of " + VERSION);
+		}
+		size = buffer.getInt(8);
+		if (buffer.capacity() != HEADER + size * RECORD) {
+			throw new IOException(filename + " is truncated");
+		}
+		firstOfOrder = new int[CanonicalLabeling.MAX_ORDER + 2];
+		for (int i = 0; i <= CanonicalLabeling.MAX_ORDER; i++) {
+			firstOfOrder[i + 1] = firstOfOrder[i] + buffer.getInt(16 + 4 * i);
+		}
+		codesPerOrder = new AtomicReferenceArray<long[]>(
+				CanonicalLabeling.MAX_ORDER + 1);
+		idsPerOrder = new AtomicReferenceArray<int[]>(
+				CanonicalLabeling.MAX_ORDER + 1);
+		orbitsPerOrder = new AtomicReferenceArray<List<OrbitRepresentative>>(
+				CanonicalLabeling.MAX_ORDER + 1);
+	}
+
+	/**
+	 * Checks whether a file starts with the magic number of a binary catalog.
+	 *
+	 * @param filename
+	 *            The name of the file to be checked.
+	 * @return True if the file looks like a binary catalog.
+	 */
+	public static boolean isBinaryCatalog(String filename) {
+		File file = new File(filename);
+		if (file.length() < 4) {
+			return false;
+		}
+		try {
+			DataInputStream in = new DataInputStream(new FileInputStream(file));
+			try {
+				return in.readInt() == MAGIC;
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Converts the orbits of a catalog to a binary catalog. The sub-orbits of
+	 * every orbit are calculated here, so that loading the binary catalog does
+	 * not have to.
+	 *
+	 * @param catalog
+	 *            The catalog to be converted.
+	 * @param filename
+	 *            The name of the binary catalog to be written.
+	 * @throws IOException
+	 *             If the file cannot be written.
+	 */
+	public static void write(OrbitCatalog catalog, String filename)
+			throws IOException {
+		int maxOrder = 0;
+		int size = 0;
+		int[] counts = new int[CanonicalLabeling.MAX_ORDER + 1];
+		for (int order = 2; order <= catalog.getMaxOrder(); order++) {
+			counts[order] = catalog.getNOrbitsForOrder(order);
+			size += counts[order];
+			maxOrder = order;
+		}
+		ByteBuffer out = ByteBuffer.allocate(HEADER + size * RECORD);
+		out.putInt(MAGIC).putInt(VERSION).putInt(size).putInt(maxOrder);
+		for (int count : counts) {
+			out.putInt(count);
+		}
+		int id = 0;
+		for (int order = 2; order <= maxOrder; order++) {
+			for (OrbitRepresentative or : catalog.getOrbitsOfOrder(order)) {
+				or.calculateSymmetry();
+				out.putInt(id++).putInt(or.order()).putLong(or.getAdjacency())
+						.putLong(or.canonicalCode());
+				int[] partition = or.orbitPartition();
+				for (int i = 0; i < PARTITION; i++) {
+					out.put((byte) (i < partition.length ? partition[i] : -1));
+				}
+			}
+		}
+		RandomAccessFile file = new RandomAccessFile(filename, "rw");
+		try {
+			file.setLength(0);
+			out.flip();
+			file.getChannel().write(out);
+		} finally {
+			file.close();
+		}
+	}
+
+	/**
+	 *
+	 * @return The number of orbits in this catalog.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 *
+	 * @param order
+	 *            An order of graphlets.
+	 * @return The number of orbits of the given order in this catalog.
+	 */
+	public int getNOrbitsForOrder(int order) {
+		if (order < 0 || order > CanonicalLabeling.MAX_ORDER) {
+			return 0;
+		}
+		return firstOfOrder[order + 1] - firstOfOrder[order];
+	}
+
+	/**
+	 *
+	 * @return The highest order of the orbits in this catalog.
+	 */
+	public int getMaxOrder() {
+		return buffer.getInt(12);
+	}
+
+	/**
+	 * Returns the number of an orbit, by binary search through the canonical
+	 * codes of all orbits of the same order. These codes are sorted the first
+	 * time an orbit of that order is looked up.
+	 *
+	 * @param order
+	 *            The order of the orbit.
+	 * @param code
+	 *            The canonical code of the orbit.
+	 * @return The number of the orbit, or -1 if it is not in the catalog.
+	 */
+	public int identifyOrbit(int order, long code) {
+		if (getNOrbitsForOrder(order) == 0) {
+			return -1;
+		}
+		long[] codes = codesPerOrder.get(order);
+		if (codes == null) {
+			index(order);
+			codes = codesPerOrder.get(order);
+		}
+		int i = Arrays.binarySearch(codes, code);
+		return i < 0 ? -1 : idsPerOrder.get(order)[i];
+	}
+
+	/**
+	 * Returns all orbits of the given order, reading them from the mapped file
+	 * the first time they are asked for. Their canonical codes and sub-orbits
+	 * are taken from the catalog instead of being calculated.
+	 *
+	 * @param order
+	 *            The order of the orbits.
+	 * @return The orbits of the given order, ordered by number.
+	 * @throws IllegalArgumentException
+	 *             If the catalog has no orbits of the given order.
+	 */
+	public List<OrbitRepresentative> getOrbitsOfOrder(int order) {
+		if (order < 2 || order > getMaxOrder()) {
+			throw new IllegalArgumentException("The catalog has no orbits of order "
+					+ order + ", only of orders 2 to " + getMaxOrder() + ".");
+		}
+		List<OrbitRepresentative> orbits = orbitsPerOrder.get(order);
+		if (orbits == null) {
+			orbits = new ArrayList<OrbitRepresentative>();
+			for (int id = firstOfOrder[order]; id < firstOfOrder[order + 1]; id++) {
+				int offset = HEADER + id * RECORD;
+				int[] partition = new int[order];
+				for (int i = 0; i < order; i++) {
+					partition[i] = buffer.get(offset + 24 + i);
+				}
+				OrbitRepresentative or = new OrbitRepresentative(
+						buffer.getLong(offset + 8), order,
+						buffer.getLong(offset + 16), partition);
+				or.id = id;
+				or.catalog = catalog;
+				orbits.add(or);
+			}
+			orbitsPerOrder.compareAndSet(order, null, orbits);
+			orbits = orbitsPerOrder.get(order);
+		}
+		return orbits;
+	}
+
+	/**
+	 * Returns the orbit with the given number, as returned by
+	 * {@link #getOrbitsOfOrder(int)}.
+	 *
+	 * @param id
+	 *            The number of the orbit.
+	 * @return The orbit with the given number.
+	 * @throws IllegalArgumentException
+	 *             If the catalog has no orbit with the given number.
+	 */
+	public OrbitRepresentative getOrbit(int id) {
+		if (id < 0 || id >= size) {
+			throw new IllegalArgumentException("The catalog has no orbit " + id
+					+ ", only orbits 0 to " + (size - 1) + ".");
+		}
+		int order = 0;
+		while (firstOfOrder[order + 1] <= id) {
+			order++;
+		}
+		return getOrbitsOfOrder(order).get(id - firstOfOrder[order]);
+	}
+
+	private synchronized void index(int order) {
+		if (codesPerOrder.get(order) != null) {
+			return;
+		}
+		int from = firstOfOrder[order];
+		int n = firstOfOrder[order + 1] - from;
+		long[][] pairs = new long[n][];
+		for (int i = 0; i < n; i++) {
+			int offset = HEADER + (from + i) * RECORD;
+			pairs[i] = new long[] { buffer.getLong(offset + 16),
+					buffer.getInt(offset) };
+		}
+		Arrays.sort(pairs, new Comparator<long[]>() {
+			@Override
+			public int compare(long[] a, long[] b) {
+				return a[0] < b[0] ? -1 : a[0] > b[0] ? 1 : 0;
+			}
+		});
+		long[] codes = new long[n];
+		int[] ids = new int[n];
+		for (int i = 0; i < n; i++) {
+			codes[i] = pairs[i][0];
+			ids[i] = (int) pairs[i][1];
+		}
+		idsPerOrder.set(order, ids);
+		codesPerOrder.set(order, codes);
+	}
+
+	/**
+	 * Converts a text catalog to a binary catalog.
+	 *
+	 * @param args
+	 *            The name of the text catalog and the name of the binary
+	 *            catalog to be written.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			System.out.println("Usage: BinaryOrbitCatalog <text catalog> <binary catalog>");
+			return;
+		}
+		write(new OrbitCatalog(args[0], CanonicalLabeling.MAX_ORDER), args[1]);
+	}
+}
@@ -0,0 +1,237 @@
+package equations;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class CanonicalLabeling {
+
+	/**
+	 * The highest order for which a canonical code still fits in a long: the
+	 * upper triangle of an 11x11 adjacency matrix holds 55 bits.
+	 */
+	public static final int MAX_ORDER = 11;
+
+	private int[] adjacency;
+	private int order;
+	private long code;
+	private int[] best;
+	private List<int[]> automorphisms;
+
+	/**
+	 * Calculates the canonical form of a rooted graph. Node 0 is the root and
+	 * always keeps label 0; all other nodes are relabeled so that the upper
+	 * triangle of the adjacency matrix, read row by row, forms the largest
+	 * possible number. Two rooted graphs are isomorphic (with the root mapped
+	 * onto the root) if and only if their canonical codes are equal.
+	 *
+	 * The search refines an ordered partition of the nodes by the number of
+	 * neighbours each node has in every cell, individualizes one node of the
+	 * first non-trivial cell and repeats until every cell is a single node.
+	 * Whenever two leaves of the search tree give the same code, the mapping
+	 * between them is an automorphism, which is used to skip branches that
+	 * can only lead to leaves already seen.
+	 *
+	 * @param adjacency
+	 *            The rows of the adjacency matrix: bit j of adjacency[i] is set
+	 *            if nodes i and j are connected.
+	 * @param order
+	 *            The number of nodes in the graph, at most MAX_ORDER.
+	 */
+	public CanonicalLabeling(int[] adjacency, int order) {
+		this(adjacency, order, 0);
+	}
+
+	/**
+	 * Calculates the canonical form of a rooted graph in which one more node
+	 * is marked. The marked node always gets label 1, so two graphs have the
+	 * same code if and only if there is an isomorphism between them that maps
+	 * root onto root and marked node onto marked node. In particular, two
+	 * nodes of one graph are in the same sub-orbit if and only if marking
+	 * either of them gives the same code.
+	 *
+	 * @param adjacency
+	 *            The rows of the adjacency matrix.
+	 * @param order
+	 *            The number of nodes in the graph, at most MAX_ORDER.
+	 * @param marked
+	 *            The node to be marked, or 0 to mark none.
+	 */
+	public CanonicalLabeling(int[] adjacency, int order, int marked) {
+		assert (order >= 1 && order <= MAX_ORDER && marked < order);
+		this.adjacency = adjacency;
+		this.order = order;
+		code = -1;
+		automorphisms = new ArrayList<int[]>();
+		int[] cells = new int[order];
+		int k = 0;
+		cells[k++] = 1;
+		if (marked != 0)
+			cells[k++] = 1 << marked;
+		if (order > k)
+			cells[k++] = ((1 << order) - 1) & ~1 & ~(1 << marked);
+		search(cells, k, new int[order], 0);
+	}
+
+	/**
+	 * Returns the canonical code of a rooted graph.
+	 *
+	 * @param adjacency
+	 *            The rows of the adjacency matrix.
+	 * @param order
+	 *            The number of nodes in the graph.
+	 * @return The canonical code of the graph.
+	 */
+	public static long canonicalCode(int[] adjacency, int order) {
+		return new CanonicalLabeling(adjacency, order).getCode();
+	}
+
+	/**
+	 *
+	 * @return The canonical code: bit (i,j) of the upper triangle, taken in
+	 *         row order and with the first pair as most significant bit, is
+	 *         set if the nodes labeled i and j are connected.
+	 */
+	public long getCode() {
+		return code;
+	}
+
+	/**
+	 *
+	 * @return An array giving the canonical label of every node.
+	 */
+	public int[] getLabeling() {
+		int[] labeling = new int[order];
+		for (int i = 0; i < order; i++) {
+			labeling[best[i]] = i;
+		}
+		return labeling;
+	}
+
+	private void search(int[] cells, int k, int[] path, int depth) {
+		k = refine(cells, k);
+		if (k == order) {
+			leaf(cells);
+			return;
+		}
+		int target = 0;
+		while (Integer.bitCount(cells[target]) == 1) {
+			target++;
+		}
+		int explored = 0;
+		for (int v = 0; v < order; v++) {
+			if ((cells[target] & (1 << v)) == 0
+					|| (orbitOf(v, path, depth) & explored) != 0) {
+				continue;
+			}
+			explored |= 1 << v;
+			int[] child = new int[order];
+			System.arraycopy(cells, 0, child, 0, target);
+			child[target] = 1 << v;
+			child[target + 1] = cells[target] & ~(1 << v);
+			System.arraycopy(cells, target + 1, child, target + 2, k - target
+					- 1);
+			path[depth] = v;
+			search(child, k + 1, path, depth + 1);
+		}
+	}
+
+	/**
+	 * Splits the cells of an ordered partition until every node in a cell has
+	 * the same number of neighbours in each other cell. Cells are split into
+	 * fragments ordered by that number, so the result does not depend on how
+	 * the nodes are numbered.
+	 *
+	 * @return The number of cells after refinement.
+	 */
+	private int refine(int[] cells, int k) {
+		int[] fragments = new int[order + 1];
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (int s = 0; s < k && !changed; s++) {
+				for (int c = 0; c < k && !changed; c++) {
+					if (Integer.bitCount(cells[c]) < 2) {
+						continue;
+					}
+					for (int i = 0; i <= order; i++) {
+						fragments[i] = 0;
+					}
+					for (int v = 0; v < order; v++) {
+						if ((cells[c] & (1 << v)) != 0) {
+							fragments[Integer.bitCount(adjacency[v] & cells[s])] |= 1 << v;
+						}
+					}
+					int n = 0;
+					for (int i = 0; i <= order; i++) {
+						if (fragments[i] != 0) {
+							fragments[n++] = fragments[i];
+						}
+					}
+					if (n > 1) {
+						System.arraycopy(cells, c + 1, cells, c + n, k - c - 1);
+						System.arraycopy(fragments, 0, cells, c, n);
+						k += n - 1;
+						changed = true;
+					}
+				}
+			}
+		}
+		return k;
+	}
+
+	private void leaf(int[] cells) {
+		Statistics.labeling();
+		int[] nodes = new int[order];
+		for (int i = 0; i < order; i++) {
+			nodes[i] = Integer.numberOfTrailingZeros(cells[i]);
+		}
+		long c = 0;
+		for (int i = 0; i < order - 1; i++) {
+			for (int j = i + 1; j < order; j++) {
+				c <<= 1;
+				if ((adjacency[nodes[i]] & (1 << nodes[j])) != 0) {
+					c |= 1;
+				}
+			}
+		}
+		if (c > code) {
+			code = c;
+			best = nodes;
+		} else if (c == code) {
+			int[] automorphism = new int[order];
+			for (int i = 0; i < order; i++) {
+				automorphism[nodes[i]] = best[i];
+			}
+			automorphisms.add(automorphism);
+		}
+	}
+
+	/**
+	 * Returns the nodes a node can be mapped onto by the automorphisms found
+	 * so far that leave the individualized nodes on the current path in place.
+	 */
+	private int orbitOf(int v, int[] path, int depth) {
+		int orbit = 1 << v;
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (int[] automorphism : automorphisms) {
+				boolean fixes = true;
+				for (int i = 0; i < depth && fixes; i++) {
+					fixes = automorphism[path[i]] == path[i];
+				}
+				if (!fixes) {
+					continue;
+				}
+				for (int u = 0; u < order; u++) {
+					if ((orbit & (1 << u)) != 0
+							&& (orbit & (1 << automorphism[u])) == 0) {
+						orbit |= 1 << automorphism[u];
+						changed = true;
+					}
+				}
+			}
+		}
+		return orbit;
+	}
+}
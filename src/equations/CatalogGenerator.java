@@ -0,0 +1,225 @@
+package equations;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+public class CatalogGenerator {
+
+	/**
+	 * Generates all orbits of the next order from all orbits of a given order.
+	 * Every orbit of the next order is created exactly once: a new node is
+	 * added to every orbit in all possible ways, and the result is only kept
+	 * if the new node could have been chosen as the canonical node to remove
+	 * (see {@link #isCanonicalExtension(OrbitRepresentative, CanonicalLabeling)}).
+	 * Since removing that node gives an orbit of the lower order, each orbit
+	 * of the next order is only kept when extending that one orbit, so no set
+	 * of all orbits found so far is needed.
+	 * 
+	 * @param orbits
+	 *            All orbits of one order, each exactly once.
+	 * @param parallelism
+	 *            The number of threads to use.
+	 * @return All orbits of the next order, ordered by number of edges and
+	 *         then by canonical code.
+	 */
+	public static List<OrbitRepresentative> extend(
+			List<OrbitRepresentative> orbits, int parallelism) {
+		List<OrbitRepresentative> result;
+		if (parallelism <= 1) {
+			result = new ArrayList<OrbitRepresentative>();
+			for (OrbitRepresentative or : orbits) {
+				result.addAll(extend(or));
+			}
+		} else {
+			ForkJoinPool pool = new ForkJoinPool(parallelism);
+			try {
+				result = pool.invoke(new ExtensionTask(orbits, parallelism));
+			} finally {
+				pool.shutdown();
+			}
+		}
+		Collections.sort(result, new Comparator<OrbitRepresentative>() {
+			@Override
+			public int compare(OrbitRepresentative a, OrbitRepresentative b) {
+				int edges = Long.bitCount(a.getAdjacency())
+						- Long.bitCount(b.getAdjacency());
+				if (edges != 0)
+					return edges;
+				long codeA = a.canonicalCode();
+				long codeB = b.canonicalCode();
+				return codeA < codeB ? -1 : codeA > codeB ? 1 : 0;
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Generates the orbits of the next order that are canonical extensions of
+	 * the given orbit, each of them once.
+	 * 
+	 * @param parent
+	 *            The orbit to be extended.
+	 * @return The canonical extensions of the orbit.
+	 */
+	public static List<OrbitRepresentative> extend(OrbitRepresentative parent) {
+		List<OrbitRepresentative> result = new ArrayList<OrbitRepresentative>();
+		Set<Long> codes = new HashSet<Long>();
+		int order = parent.order();
+		for (int i = 1; i < 1 << order; i++) {
+			boolean[] connections = new boolean[order];
+			for (int j = 0; j < order; j++) {
+				connections[j] = (i & (1 << j)) != 0;
+			}
+			OrbitRepresentative child = new OrbitRepresentative(parent);
+			child.addNode(connections);
+			int[] rows = rows(child);
+			CanonicalLabeling cl = new CanonicalLabeling(rows, order + 1);
+			if (isCanonicalExtension(child, cl) && codes.add(cl.getCode())) {
+				result.add(child);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Checks whether the last node of an orbit-graphlet is the node that has to
+	 * be removed to find the orbit it was generated from. That node is, among
+	 * all nodes except the root that can be removed without disconnecting the
+	 * graphlet, the one with the highest canonical label; any node in the same
+	 * sub-orbit is just as good.
+	 * 
+	 * @param g
+	 *            An orbit-graphlet of which the last node was just added.
+	 * @param cl
+	 *            The canonical labeling of the orbit-graphlet.
+	 * @return True if the last node is the canonical node to remove.
+	 */
+	public static boolean isCanonicalExtension(OrbitRepresentative g,
+			CanonicalLabeling cl) {
+		int order = g.order();
+		int[] rows = rows(g);
+		int[] labeling = cl.getLabeling();
+		int removable = -1;
+		for (int v = 1; v < order; v++) {
+			if (!isCutNode(rows, order, v)
+					&& (removable < 0 || labeling[v] > labeling[removable])) {
+				removable = v;
+			}
+		}
+		if (removable == order - 1)
+			return true;
+		return new CanonicalLabeling(rows, order, removable).getCode() == new CanonicalLabeling(
+				rows, order, order - 1).getCode();
+	}
+
+	/**
+	 * Writes orbits in the text format read by
+	 * {@link OrbitIdentification#readGraphlets(String, int)}: one orbit per
+	 * line, as a comma-separated list of edges.
+	 * 
+	 * @param out
+	 *            The Writer the orbits are written to.
+	 * @param orbits
+	 *            The orbits to be written, ordered by order and number.
+	 * @throws IOException
+	 *             If the Writer fails.
+	 */
+	public static void write(Writer out, List<OrbitRepresentative> orbits)
+			throws IOException {
+		for (OrbitRepresentative or : orbits) {
+			boolean first = true;
+			for (int j = 1; j < or.order(); j++) {
+				for (int i = 0; i < j; i++) {
+					if (or.hasEdge(i, j)) {
+						out.write((first ? "" : ",") + i + " " + j);
+						first = false;
+					}
+				}
+			}
+			out.write('\n');
+		}
+	}
+
+	/**
+	 * Extends an orbit catalog to a higher order. The orbits already in the
+	 * catalog keep their numbers; the orbits of each new order are numbered
+	 * after them, ordered by number of edges and then by canonical code.
+	 * 
+	 * @param args
+	 *            The highest order to generate, the name of the existing
+	 *            catalog and the name of the catalog to be written.
+	 *            Optionally, "threads=n" sets the number of threads.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 3) {
+			System.out.println("Usage: CatalogGenerator <order> <catalog> <output> [threads=n]");
+			return;
+		}
+		int maxOrder = Integer.parseInt(args[0]);
+		int parallelism = Runtime.getRuntime().availableProcessors();
+		if (args.length > 3 && args[3].startsWith("threads="))
+			parallelism = Integer.parseInt(args[3].substring(8));
+		if (maxOrder > CanonicalLabeling.MAX_ORDER) {
+			System.out.println("Orbits of order above "
+					+ CanonicalLabeling.MAX_ORDER + " are not supported.");
+			return;
+		}
+		OrbitCatalog catalog = new OrbitCatalog(args[1], maxOrder);
+		List<OrbitRepresentative> all = new ArrayList<OrbitRepresentative>();
+		List<OrbitRepresentative> orbits = null;
+		for (int order = 2; order <= maxOrder; order++) {
+			if (order <= catalog.getMaxOrder()) {
+				orbits = catalog.getOrbitsOfOrder(order);
+			} else {
+				orbits = extend(orbits, parallelism);
+				System.out.println(orbits.size() + " orbits of order " + order);
+			}
+			all.addAll(orbits);
+		}
+		Writer out = new BufferedWriter(new FileWriter(args[2]));
+		try {
+			write(out, all);
+		} finally {
+			out.close();
+		}
+	}
+
+	private static int[] rows(OrbitRepresentative g) {
+		int[] rows = new int[g.order()];
+		for (int i = 0; i < rows.length; i++) {
+			rows[i] = g.row(i);
+		}
+		return rows;
+	}
+
+	/**
+	 * Checks whether removing a node disconnects the rest of the graph.
+	 */
+	private static boolean isCutNode(int[] rows, int order, int node) {
+		int all = ((1 << order) - 1) & ~(1 << node);
+		int start = node == 0 ? 1 : 0;
+		int reached = 1 << start;
+		int frontier = reached;
+		while (frontier != 0) {
+			int next = 0;
+			for (int v = 0; v < order; v++) {
+				if ((frontier & (1 << v)) != 0) {
+					next |= rows[v];
+				}
+			}
+			next &= all & ~reached;
+			reached |= next;
+			frontier = next;
+		}
+		return reached != all;
+	}
+}
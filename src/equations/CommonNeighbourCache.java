@@ -0,0 +1,88 @@
+package equations;
+
+/**
+ * Remembers the number of common neighbours of pairs of nodes. The same pair
+ * turns up in the terms of many equations, in many occurrences and for
+ * neighbouring nodes being counted, so a kernel asks its cache before
+ * intersecting the rows again.
+ *
+ * The cache is a table of fixed size in which a pair can only be in one
+ * slot, given by hashing both nodes; a pair simply replaces the one in its
+ * slot. Looking up a pair is cheaper than intersecting only when both rows
+ * are long enough, so pairs of which a node has a low degree are counted
+ * directly. A cache is not thread-safe: every kernel has its own.
+ */
+class CommonNeighbourCache {
+
+	/**
+	 * The number of pairs a cache holds by default.
+	 */
+	static final int DEFAULT_CAPACITY = 1 << 14;
+
+	/**
+	 * Pairs of which a node has a lower degree are not cached.
+	 */
+	private static final int MIN_DEGREE = 8;
+
+	private final CommonNeighbours index;
+	private final Graph graph;
+	private final long[] pairs;
+	private final int[] counts;
+	private final int mask;
+	private long hits;
+	private long misses;
+
+	/**
+	 * Creates an empty cache.
+	 *
+	 * @param index
+	 *            The index counting the pairs not found in the cache.
+	 * @param capacity
+	 *            The number of slots, rounded up to a power of two.
+	 */
+	CommonNeighbourCache(CommonNeighbours index, int capacity) {
+		this.index = index;
+		graph = index.getGraph();
+		int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+		pairs = new long[size];
+		counts = new int[size];
+		mask = size - 1;
+	}
+
+	/**
+	 * Counts the common neighbours of two nodes, from the cache if possible.
+	 *
+	 * @return The number of nodes connected to both.
+	 */
+	int count(int u, int v) {
+		if (graph.degree(u) < MIN_DEGREE || graph.degree(v) < MIN_DEGREE) {
+			return index.count(u, v);
+		}
+		if (u > v) {
+			int w = u;
+			u = v;
+			v = w;
+		}
+		// as u < v, no pair has the key 0 of an empty slot
+		long key = (long) u << 32 | v;
+		long h = key * 0x9E3779B97F4A7C15L;
+		int slot = (int) (h >>> 40) & mask;
+		if (pairs[slot] == key) {
+			hits++;
+			return counts[slot];
+		}
+		misses++;
+		int count = index.count(u, v);
+		pairs[slot] = key;
+		counts[slot] = count;
+		return count;
+	}
+
+	long getHits() {
+		return hits;
+	}
+
+	long getMisses() {
+		return misses;
+	}
+}
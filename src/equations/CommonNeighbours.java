@@ -0,0 +1,402 @@
+package equations;
+
+import java.util.Arrays;
+
+/**
+ * Counts common neighbours in a graph. Every term in the right-hand side of
+ * an equation is such a count, so this is where counting orbits spends most
+ * of its time.
+ *
+ * The neighbours of every node are sorted, so two rows of similar length are
+ * intersected by merging them, and a short row is intersected with a much
+ * longer one by galloping through the long row: doubling the step until it
+ * passes the value looked for, then searching the last step by bisection.
+ * Nodes of very high degree, the hubs of social graphs, additionally get a
+ * row of bits, one for every node of the graph. An edge to a hub is then a
+ * single bit test, and hubs are intersected a word at a time, instead of
+ * walking rows that are each a sizeable part of the graph. Up to five rows,
+ * the most nodes in a term of order 6, are combined by a loop of their own,
+ * so that every word is read once and counted with a single population
+ * count.
+ *
+ * An index only reads the graph, so it is shared by all counting threads.
+ */
+public class CommonNeighbours {
+
+	/**
+	 * The number of bytes the rows of bits may take by default.
+	 */
+	public static final long DEFAULT_BUDGET = 1L << 26;
+
+	/**
+	 * Rows whose lengths differ by a larger factor are intersected by
+	 * galloping instead of merging.
+	 */
+	private static final int GALLOP_RATIO = 16;
+
+	/**
+	 * Nodes of lower degree never get a row of bits.
+	 */
+	private static final int MIN_HUB_DEGREE = 64;
+
+	private final Graph graph;
+	private final int[] hub;
+	private final long[][] bits;
+
+	/**
+	 * Creates an index for a graph, giving rows of bits to its hubs within
+	 * {@link #DEFAULT_BUDGET}.
+	 *
+	 * @param graph
+	 *            The graph.
+	 */
+	public CommonNeighbours(Graph graph) {
+		this(graph, DEFAULT_BUDGET);
+	}
+
+	/**
+	 * Creates an index for a graph. A node is a hub when its degree is at
+	 * least a 64th of the number of nodes, where its row of bits takes at
+	 * most twice the memory of its sorted neighbours. Hubs get their rows in
+	 * order of decreasing degree for as long as the budget allows.
+	 *
+	 * @param graph
+	 *            The graph.
+	 * @param budget
+	 *            The highest number of bytes taken by the rows of bits.
+	 */
+	public CommonNeighbours(Graph graph, long budget) {
+		this.graph = graph;
+		int n = graph.size();
+		int words = (n + 63) >>> 6;
+		int threshold = Math.max(MIN_HUB_DEGREE, n >>> 6);
+		int count = (int) Math.min(Integer.MAX_VALUE, budget / (8L * words));
+		int[] candidates = new int[n];
+		int found = 0;
+		for (int v = 0; v < n; v++) {
+			if (graph.degree(v) >= threshold) {
+				candidates[found++] = v;
+			}
+		}
+		hub = new int[n];
+		Arrays.fill(hub, -1);
+		if (found > count) {
+			// keep the hubs of highest degree
+			long[] keys = new long[found];
+			for (int i = 0; i < found; i++) {
+				keys[i] = (long) -graph.degree(candidates[i]) << 32
+						| candidates[i];
+			}
+			Arrays.sort(keys);
+			for (int i = 0; i < count; i++) {
+				candidates[i] = (int) keys[i];
+			}
+			found = count;
+		}
+		bits = new long[found][];
+		for (int h = 0; h < found; h++) {
+			int v = candidates[h];
+			long[] row = new long[words];
+			for (int i = graph.start(v); i < graph.start(v + 1); i++) {
+				int w = graph.target(i);
+				row[w >>> 6] |= 1L << w;
+			}
+			hub[v] = h;
+			bits[h] = row;
+		}
+	}
+
+	/**
+	 *
+	 * @return The graph of this index.
+	 */
+	public Graph getGraph() {
+		return graph;
+	}
+
+	/**
+	 *
+	 * @return The number of nodes with a row of bits.
+	 */
+	public int getHubs() {
+		return bits.length;
+	}
+
+	/**
+	 *
+	 * @return True if the node has a row of bits.
+	 */
+	public boolean isHub(int v) {
+		return hub[v] >= 0;
+	}
+
+	/**
+	 * Checks whether two nodes are connected: by a bit test if either is a
+	 * hub, otherwise by binary search in the shorter row.
+	 *
+	 * @param u
+	 *            A node of the graph.
+	 * @param v
+	 *            Another node of the graph.
+	 * @return True if there is an edge between both nodes.
+	 */
+	public boolean hasEdge(int u, int v) {
+		if (hub[u] >= 0) {
+			return (bits[hub[u]][v >>> 6] & 1L << v) != 0;
+		}
+		if (hub[v] >= 0) {
+			return (bits[hub[v]][u >>> 6] & 1L << u) != 0;
+		}
+		return graph.hasEdge(u, v);
+	}
+
+	/**
+	 * Counts the common neighbours of two nodes.
+	 *
+	 * @param u
+	 *            A node of the graph.
+	 * @param v
+	 *            Another node of the graph.
+	 * @return The number of nodes connected to both.
+	 */
+	public int count(int u, int v) {
+		if (graph.degree(u) > graph.degree(v)) {
+			int w = u;
+			u = v;
+			v = w;
+		}
+		if (hub[v] < 0) {
+			return intersect(u, v);
+		}
+		if (hub[u] >= 0) {
+			return and(bits[hub[u]], bits[hub[v]]);
+		}
+		long[] row = bits[hub[v]];
+		int count = 0;
+		for (int i = graph.start(u); i < graph.start(u + 1); i++) {
+			int w = graph.target(i);
+			if ((row[w >>> 6] & 1L << w) != 0) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Counts the common neighbours of some nodes. If all of them are hubs,
+	 * their rows of bits are intersected. Otherwise the neighbours of the node
+	 * of lowest degree are tested against the others, by a bit test for hubs
+	 * and by galloping forward through the sorted rows of the rest.
+	 *
+	 * @param nodes
+	 *            An array holding the nodes.
+	 * @param k
+	 *            The number of nodes in the array to be used, at least 1.
+	 * @return The number of common neighbours of the first k nodes.
+	 */
+	public int count(int[] nodes, int k) {
+		return count(nodes, k, new int[k]);
+	}
+
+	/**
+	 * Counts the common neighbours of some nodes like
+	 * {@link #count(int[], int)}, keeping the positions reached in the rows
+	 * in an array of the caller, so that counting in the innermost loops
+	 * does not allocate.
+	 *
+	 * @param nodes
+	 *            An array holding the nodes.
+	 * @param k
+	 *            The number of nodes in the array to be used, at least 1.
+	 * @param at
+	 *            Scratch space for at least k positions.
+	 * @return The number of common neighbours of the first k nodes.
+	 */
+	public int count(int[] nodes, int k, int[] at) {
+		switch (k) {
+		case 1:
+			return graph.degree(nodes[0]);
+		case 2:
+			return count(nodes[0], nodes[1]);
+		}
+		boolean hubs = true;
+		for (int i = 0; i < k && hubs; i++) {
+			hubs = hub[nodes[i]] >= 0;
+		}
+		if (hubs) {
+			return and(nodes, k);
+		}
+		int lowest = 0;
+		for (int i = 1; i < k; i++) {
+			if (graph.degree(nodes[i]) < graph.degree(nodes[lowest])) {
+				lowest = i;
+			}
+		}
+		int v = nodes[lowest];
+		// the position reached in the row of every other node
+		for (int j = 0; j < k; j++) {
+			at[j] = graph.start(nodes[j]);
+		}
+		int count = 0;
+		for (int i = graph.start(v); i < graph.start(v + 1); i++) {
+			int w = graph.target(i);
+			boolean common = true;
+			for (int j = 0; j < k && common; j++) {
+				int u = nodes[j];
+				if (j == lowest) {
+					continue;
+				}
+				if (hub[u] >= 0) {
+					common = (bits[hub[u]][w >>> 6] & 1L << w) != 0;
+				} else {
+					int end = graph.start(u + 1);
+					at[j] = gallop(at[j], end, w);
+					if (at[j] == end) {
+						return count;
+					}
+					common = graph.target(at[j]) == w;
+				}
+			}
+			if (common) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Intersects the rows of two nodes without rows of bits, the first of
+	 * which has the lowest degree.
+	 */
+	private int intersect(int u, int v) {
+		int i = graph.start(u);
+		int iEnd = graph.start(u + 1);
+		int j = graph.start(v);
+		int jEnd = graph.start(v + 1);
+		int count = 0;
+		if ((long) (iEnd - i) * GALLOP_RATIO < jEnd - j) {
+			for (; i < iEnd; i++) {
+				int w = graph.target(i);
+				j = gallop(j, jEnd, w);
+				if (j == jEnd) {
+					break;
+				}
+				if (graph.target(j) == w) {
+					count++;
+					j++;
+				}
+			}
+			return count;
+		}
+		while (i < iEnd && j < jEnd) {
+			int a = graph.target(i);
+			int b = graph.target(j);
+			if (a < b) {
+				i++;
+			} else if (a > b) {
+				j++;
+			} else {
+				count++;
+				i++;
+				j++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Finds the first position from a given one at which the neighbour is at
+	 * least the given node, doubling the step from there and bisecting the
+	 * last step.
+	 *
+	 * @return The position found, or the end if every neighbour is lower.
+	 */
+	private int gallop(int from, int end, int w) {
+		if (from == end || graph.target(from) >= w) {
+			return from;
+		}
+		// target(low) < w throughout
+		int low = from;
+		int step = 1;
+		while (low + step < end && graph.target(low + step) < w) {
+			low += step;
+			step <<= 1;
+		}
+		int high = Math.min(low + step, end);
+		while (high - low > 1) {
+			int middle = (low + high) >>> 1;
+			if (graph.target(middle) < w) {
+				low = middle;
+			} else {
+				high = middle;
+			}
+		}
+		return high;
+	}
+
+	/**
+	 * Counts the bits the rows of some hubs have in common.
+	 */
+	private int and(int[] nodes, int k) {
+		long[] a = bits[hub[nodes[0]]];
+		long[] b = bits[hub[nodes[1]]];
+		if (k == 2) {
+			return and(a, b);
+		}
+		long[] c = bits[hub[nodes[2]]];
+		if (k == 3) {
+			return and(a, b, c);
+		}
+		long[] d = bits[hub[nodes[3]]];
+		if (k == 4) {
+			return and(a, b, c, d);
+		}
+		if (k == 5) {
+			return and(a, b, c, d, bits[hub[nodes[4]]]);
+		}
+		int count = 0;
+		for (int i = 0; i < a.length; i++) {
+			long word = a[i] & b[i] & c[i] & d[i];
+			for (int j = 4; j < k && word != 0; j++) {
+				word &= bits[hub[nodes[j]]][i];
+			}
+			count += Long.bitCount(word);
+		}
+		return count;
+	}
+
+	/**
+	 * Counts the bits two rows have in common.
+	 */
+	private static int and(long[] a, long[] b) {
+		int count = 0;
+		for (int i = 0; i < a.length; i++) {
+			count += Long.bitCount(a[i] & b[i]);
+		}
+		return count;
+	}
+
+	private static int and(long[] a, long[] b, long[] c) {
+		int count = 0;
+		for (int i = 0; i < a.length; i++) {
+			count += Long.bitCount(a[i] & b[i] & c[i]);
+		}
+		return count;
+	}
+
+	private static int and(long[] a, long[] b, long[] c, long[] d) {
+		int count = 0;
+		for (int i = 0; i < a.length; i++) {
+			count += Long.bitCount(a[i] & b[i] & c[i] & d[i]);
+		}
+		return count;
+	}
+
+	private static int and(long[] a, long[] b, long[] c, long[] d, long[] e) {
+		int count = 0;
+		for (int i = 0; i < a.length; i++) {
+			count += Long.bitCount(a[i] & b[i] & c[i] & d[i] & e[i]);
+		}
+		return count;
+	}
+}
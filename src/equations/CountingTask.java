@@ -0,0 +1,79 @@
+package equations;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Counts the orbits of a range of nodes, splitting the range in two until it
+ * is small enough to handle in one thread. Every node is handled on its own:
+ * its row of counts is written by the task it belongs to only.
+ *
+ * A kernel takes scratch space as large as the graph, so it is created once
+ * for every thread that runs a task and then handles all the ranges that
+ * thread takes on.
+ */
+class CountingTask extends RecursiveAction {
+
+	private static final long serialVersionUID = 1L;
+
+	private final OrbitCounter counter;
+	private final Graph graph;
+	private final long[][] counts;
+	private final ConcurrentMap<Thread, Kernel> kernels;
+	private final int from;
+	private final int to;
+	private final int threshold;
+
+	/**
+	 * Creates a task counting the orbits of all nodes of a graph.
+	 *
+	 * @param counter
+	 *            The counter holding the equations.
+	 * @param graph
+	 *            The graph.
+	 * @param counts
+	 *            The array receiving the counts of every node.
+	 * @param kernels
+	 *            The kernel of every thread that has run a task so far, to
+	 *            which the threads add their own.
+	 * @param parallelism
+	 *            The number of threads the work will be spread over.
+	 */
+	public CountingTask(OrbitCounter counter, Graph graph, long[][] counts,
+			ConcurrentMap<Thread, Kernel> kernels, int parallelism) {
+		this(counter, graph, counts, kernels, 0, graph.size(), Math.max(64,
+				graph.size() / (64 * Math.max(1, parallelism))));
+	}
+
+	private CountingTask(OrbitCounter counter, Graph graph, long[][] counts,
+			ConcurrentMap<Thread, Kernel> kernels, int from, int to,
+			int threshold) {
+		this.counter = counter;
+		this.graph = graph;
+		this.counts = counts;
+		this.kernels = kernels;
+		this.from = from;
+		this.to = to;
+		this.threshold = threshold;
+	}
+
+	@Override
+	protected void compute() {
+		if (to - from <= threshold) {
+			// only this thread adds a kernel under its own key
+			Kernel kernel = kernels.get(Thread.currentThread());
+			if (kernel == null) {
+				kernel = counter.newKernel(graph);
+				kernels.put(Thread.currentThread(), kernel);
+			}
+			for (int x = from; x < to; x++) {
+				counts[x] = kernel.count(x);
+			}
+			return;
+		}
+		int middle = (from + to) >>> 1;
+		invokeAll(new CountingTask(counter, graph, counts, kernels, from,
+				middle, threshold), new CountingTask(counter, graph, counts,
+				kernels, middle, to, threshold));
+	}
+}
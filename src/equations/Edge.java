@@ -3,6 +3,25 @@ package equations;
 import java.util.Arrays;
 
 public class Edge {
+
+	/**
+	 * The number of node pairs that fit in a long bitmask, i.e. all pairs in
+	 * a graph of 11 nodes.
+	 */
+	public static final int MAX_PAIRS = 55;
+
+	private static final int[] FIRST = new int[MAX_PAIRS];
+	private static final int[] SECOND = new int[MAX_PAIRS];
+
+	static {
+		for (int j = 1, k = 0; k < MAX_PAIRS; j++) {
+			for (int i = 0; i < j; i++, k++) {
+				FIRST[k] = i;
+				SECOND[k] = j;
+			}
+		}
+	}
+
 	private int[] vertices;
 
 	/**
@@ -21,6 +40,55 @@ public class Edge {
 		}
 	}
 
+	/**
+	 * Returns the position of the edge between two vertices in a bitmask over
+	 * the upper triangle of an adjacency matrix. The edge {i,j} with i<j is
+	 * stored at bit j(j-1)/2+i, so adding a vertex to a graph only adds bits
+	 * above those already in use.
+	 * 
+	 * @param n1
+	 *            The number of the first vertex.
+	 * @param n2
+	 *            The number of the second vertex.
+	 * @return The bit index of the edge.
+	 */
+	public static int index(int n1, int n2) {
+		int i = Math.min(n1, n2);
+		int j = Math.max(n1, n2);
+		return j * (j - 1) / 2 + i;
+	}
+
+	/**
+	 * Returns a bitmask containing only the edge between two vertices.
+	 * 
+	 * @param n1
+	 *            The number of the first vertex.
+	 * @param n2
+	 *            The number of the second vertex.
+	 * @return The bitmask of the edge.
+	 */
+	public static long mask(int n1, int n2) {
+		return 1L << index(n1, n2);
+	}
+
+	/**
+	 * @param index
+	 *            The bit index of an edge.
+	 * @return The lower-numbered vertex of the edge at the given bit index.
+	 */
+	public static int first(int index) {
+		return FIRST[index];
+	}
+
+	/**
+	 * @param index
+	 *            The bit index of an edge.
+	 * @return The higher-numbered vertex of the edge at the given bit index.
+	 */
+	public static int second(int index) {
+		return SECOND[index];
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
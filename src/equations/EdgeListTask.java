@@ -0,0 +1,227 @@
+package equations;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Parses a range of chunks of a text edge list, splitting the range in two
+ * until a single chunk is left. Every chunk is read on its own from the file
+ * channel, so chunks are parsed in parallel without reading the file twice.
+ *
+ * A line belongs to the chunk in which it starts: a chunk skips the line
+ * running into it from the chunk before, and reads past its end to finish its
+ * own last line. The edges of every chunk are kept apart, so that joining
+ * them in the order of the chunks gives the edges in the order of the file.
+ */
+class EdgeListTask extends RecursiveAction {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The number of bytes of every chunk.
+	 */
+	static final int CHUNK = 1 << 24;
+
+	/**
+	 * The number of bytes read from the file at once.
+	 */
+	private static final int BLOCK = 1 << 16;
+
+	private final FileChannel channel;
+	private final String filename;
+	private final int[][] edges;
+	private final int[] lengths;
+	private final int[] nodes;
+	private final AtomicReference<IOException> failure;
+	private final int from;
+	private final int to;
+
+	private byte[] block;
+	private long blockStart;
+	private int blockLength;
+	private long position;
+
+	/**
+	 * Creates a task parsing a whole edge list.
+	 *
+	 * @param channel
+	 *            The channel of the file.
+	 * @param filename
+	 *            The name of the file, for error messages.
+	 * @param edges
+	 *            The array receiving the end points of the edges of every
+	 *            chunk, one element per chunk.
+	 * @param lengths
+	 *            The array receiving the number of end points of every chunk.
+	 * @param nodes
+	 *            The array receiving, for every chunk, the highest node number
+	 *            plus one.
+	 * @param failure
+	 *            Receives the first line found not to be an edge.
+	 */
+	public EdgeListTask(FileChannel channel, String filename, int[][] edges,
+			int[] lengths, int[] nodes, AtomicReference<IOException> failure) {
+		this(channel, filename, edges, lengths, nodes, failure, 0,
+				edges.length);
+	}
+
+	private EdgeListTask(FileChannel channel, String filename, int[][] edges,
+			int[] lengths, int[] nodes, AtomicReference<IOException> failure,
+			int from, int to) {
+		this.channel = channel;
+		this.filename = filename;
+		this.edges = edges;
+		this.lengths = lengths;
+		this.nodes = nodes;
+		this.failure = failure;
+		this.from = from;
+		this.to = to;
+	}
+
+	@Override
+	protected void compute() {
+		if (to - from <= 1) {
+			for (int c = from; c < to; c++) {
+				try {
+					parse(c);
+				} catch (IOException e) {
+					failure.compareAndSet(null, e);
+				}
+			}
+			return;
+		}
+		int middle = (from + to) >>> 1;
+		invokeAll(new EdgeListTask(channel, filename, edges, lengths, nodes,
+				failure, from, middle), new EdgeListTask(channel, filename,
+				edges, lengths, nodes, failure, middle, to));
+	}
+
+	/**
+	 * Parses the lines starting in one chunk. Every line holds the numbers of
+	 * two end points, separated by spaces or tabs; anything after them is
+	 * ignored, as are empty lines and lines starting with '#' or '%'.
+	 */
+	private void parse(int chunk) throws IOException {
+		block = new byte[BLOCK];
+		blockStart = 0;
+		blockLength = 0;
+		long start = (long) chunk * CHUNK;
+		long end = Math.min(channel.size(), start + CHUNK);
+		int[] result = new int[1024];
+		int length = 0;
+		int highest = 0;
+		position = start;
+		if (start > 0) {
+			// skip the line that started in the chunk before
+			position = start - 1;
+			if (next() != '\n') {
+				skipLine();
+			}
+		}
+		while (position < end && failure.get() == null) {
+			long line = position;
+			int b = skipBlanks(next());
+			if (b == -1) {
+				break;
+			}
+			if (b == '\n' || b == '\r') {
+				continue;
+			}
+			if (b == '#' || b == '%') {
+				skipLine();
+				continue;
+			}
+			long u = 0;
+			long v = 0;
+			if (!digit(b)) {
+				throw notAnEdge(line);
+			}
+			for (; digit(b); b = next()) {
+				u = 10 * u + b - '0';
+				if (u > Integer.MAX_VALUE) {
+					throw notAnEdge(line);
+				}
+			}
+			if (b != ' ' && b != '\t') {
+				throw notAnEdge(line);
+			}
+			b = skipBlanks(b);
+			if (!digit(b)) {
+				throw notAnEdge(line);
+			}
+			for (; digit(b); b = next()) {
+				v = 10 * v + b - '0';
+				if (v > Integer.MAX_VALUE) {
+					throw notAnEdge(line);
+				}
+			}
+			if (b == ' ' || b == '\t' || b == '\r') {
+				skipLine();
+			} else if (b != '\n' && b != -1) {
+				throw notAnEdge(line);
+			}
+			if (length == result.length) {
+				result = Arrays.copyOf(result, 2 * length);
+			}
+			result[length++] = (int) u;
+			result[length++] = (int) v;
+			highest = (int) Math.max(highest, Math.max(u, v) + 1);
+		}
+		edges[chunk] = result;
+		lengths[chunk] = length;
+		nodes[chunk] = highest;
+		block = null;
+	}
+
+	private IOException notAnEdge(long line) {
+		return new IOException("The line at byte " + line + " of " + filename
+				+ " is not an edge.");
+	}
+
+	private static boolean digit(int b) {
+		return b >= '0' && b <= '9';
+	}
+
+	private int skipBlanks(int b) throws IOException {
+		while (b == ' ' || b == '\t') {
+			b = next();
+		}
+		return b;
+	}
+
+	/**
+	 * Skips everything up to and including the next line feed.
+	 */
+	private void skipLine() throws IOException {
+		int b;
+		do {
+			b = next();
+		} while (b != '\n' && b != -1);
+	}
+
+	/**
+	 *
+	 * @return The next byte of the file, or -1 at its end.
+	 */
+	private int next() throws IOException {
+		if (position - blockStart >= blockLength
+				|| position < blockStart) {
+			blockStart = position;
+			ByteBuffer buffer = ByteBuffer.wrap(block);
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer, blockStart + buffer.position()) < 0) {
+					break;
+				}
+			}
+			blockLength = buffer.position();
+			if (blockLength == 0) {
+				return -1;
+			}
+		}
+		return block[(int) (position++ - blockStart)] & 0xff;
+	}
+}
@@ -4,9 +4,13 @@ import java.util.*;
 
 public class Equation {
 
-	private SortedMap<OrbitRepresentative, Integer> lhs;
+	private int[] lhsOrbits;
+	private int[] lhsCounts;
+	private long[] lhsAdjacency;
 	private OrbitRepresentative rhsOrbit;
+	private int rhsId;
 	private List<List<Integer>> rhsConnected;
+	private int[] rhsMinus;
 	private int minus;
 
 	/**
@@ -14,16 +18,22 @@ public class Equation {
 	 * are 0, all graphlets are null;
 	 */
 	public Equation() {
-		lhs = new TreeMap<OrbitRepresentative, Integer>();
+		lhsOrbits = new int[0];
+		lhsCounts = new int[0];
+		lhsAdjacency = new long[0];
 		rhsOrbit = null;
+		rhsId = -1;
 		rhsConnected = new ArrayList<List<Integer>>();
+		rhsMinus = new int[0];
 		minus = 0;
 	}
 
 	/**
 	 * Creates a new equation with specified orbits and factors in the left-hand
 	 * side and a specific orbit and one set of common nodes in the right-hand
-	 * side.
+	 * side. The orbits are only kept as their numbers, sorted, together with
+	 * the adjacency of the graphlet given for each; when the same orbit is
+	 * given twice, the first graphlet and the last factor are kept.
 	 * 
 	 * @param lhsGraphlets
 	 *            List of OrbitGraphlets in the left-hand side of the equation.
@@ -46,12 +56,53 @@ public class Equation {
 			List<Integer> connected) {
 		this();
 		assert (lhsGraphlets.size() == lhsCounts.size());
+		int n = 0;
+		int[] orbits = new int[lhsGraphlets.size()];
+		int[] counts = new int[lhsGraphlets.size()];
+		long[] adjacency = new long[lhsGraphlets.size()];
 		for (int i = 0; i < lhsGraphlets.size(); i++) {
-			lhs.put(lhsGraphlets.get(i), lhsCounts.get(i));
+			int id = lhsGraphlets.get(i).id();
+			int k = 0;
+			while (k < n && orbits[k] < id) {
+				k++;
+			}
+			if (k < n && orbits[k] == id) {
+				counts[k] = lhsCounts.get(i);
+				continue;
+			}
+			System.arraycopy(orbits, k, orbits, k + 1, n - k);
+			System.arraycopy(counts, k, counts, k + 1, n - k);
+			System.arraycopy(adjacency, k, adjacency, k + 1, n - k);
+			orbits[k] = id;
+			counts[k] = lhsCounts.get(i);
+			adjacency[k] = lhsGraphlets.get(i).getAdjacency();
+			n++;
 		}
+		this.lhsOrbits = Arrays.copyOf(orbits, n);
+		this.lhsCounts = Arrays.copyOf(counts, n);
+		this.lhsAdjacency = Arrays.copyOf(adjacency, n);
 		this.rhsOrbit = rhsGraphlet;
+		rhsId = rhsGraphlet.id();
 		rhsConnected.add(connected);
-		minus += minus(connected, rhsGraphlet);
+		rhsMinus = new int[] { minus(connected, rhsGraphlet) };
+		minus += rhsMinus[0];
+	}
+
+	/**
+	 * Creates an equation of which all parts are already known, as read by
+	 * {@link EquationCache}.
+	 */
+	Equation(int[] lhsOrbits, int[] lhsCounts, long[] lhsAdjacency,
+			OrbitRepresentative rhsOrbit, List<List<Integer>> rhsConnected,
+			int[] rhsMinus, int minus) {
+		this.lhsOrbits = lhsOrbits;
+		this.lhsCounts = lhsCounts;
+		this.lhsAdjacency = lhsAdjacency;
+		this.rhsOrbit = rhsOrbit;
+		this.rhsId = rhsOrbit.id();
+		this.rhsConnected = rhsConnected;
+		this.rhsMinus = rhsMinus;
+		this.minus = minus;
 	}
 
 	/**
@@ -65,8 +116,7 @@ public class Equation {
 	 * @return True if the equations can be merged, false if they cannot.
 	 */
 	public boolean isCompatible(Equation e) {
-		return (lhs.keySet().equals(e.lhs.keySet()) && rhsOrbit
-				.equals(e.rhsOrbit));
+		return rhsId == e.rhsId && Arrays.equals(lhsOrbits, e.lhsOrbits);
 	}
 
 	/**
@@ -80,15 +130,16 @@ public class Equation {
 	 */
 	public void merge(Equation e) {
 		assert (isCompatible(e));
+		int terms = rhsConnected.size();
 		this.rhsConnected.addAll(e.rhsConnected);
+		rhsMinus = Arrays.copyOf(rhsMinus, terms + e.rhsMinus.length);
+		System.arraycopy(e.rhsMinus, 0, rhsMinus, terms, e.rhsMinus.length);
 		// this.rhsDisconnected.addAll(e.rhsDisconnected);
 		boolean b = false;
-		for (OrbitRepresentative g : e.lhs.keySet()) {
-			for (OrbitRepresentative g2 : lhs.keySet()) {
-				if (g.getEdges().equals(g2.getEdges())) {
-					lhs.put(g, lhs.get(g) + e.lhs.get(g));
-					b = true;
-				}
+		for (int i = 0; i < lhsOrbits.length; i++) {
+			if (lhsAdjacency[i] == e.lhsAdjacency[i]) {
+				lhsCounts[i] += e.lhsCounts[i];
+				b = true;
 			}
 		}
 		if (b)
@@ -96,53 +147,9 @@ public class Equation {
 	}
 
 	public String toString() {
-
-		if (Program.latex) {
-			String result = "\\[";
-			for (OrbitRepresentative g : lhs.keySet()) {
-				result += (lhs.get(g) == 1 ? "" : lhs.get(g)) + "o_{"
-						+ OrbitIdentification.identifyOrbit(g) + "} + ";
-
-			}
-			result = result.substring(0, result.length() - 2);
-			result += "= \\sum\\limits_{P_{";
-			result += OrbitIdentification.identifyOrbit(rhsOrbit) + "} (x";
-			for (int i = 0; i < rhsOrbit.order() - 1; i++) {
-				result += "," + (char) ('a' + i);
-			}
-			result += ")} ";
-			for (int i = 0; i < rhsConnected.size(); i++) {
-				result += rhsFormula(rhsConnected.get(i), rhsOrbit);
-				result += " + ";
-			}
-			result = result.substring(0, result.length() - 2);
-			result += "\\]";
-			result += "\n";
-
-			return result;
-		} else {
-
-			String result = "";
-			for (OrbitRepresentative g : lhs.keySet()) {
-				result += (lhs.get(g) == 1 ? "" : lhs.get(g)) + "o_"
-						+ OrbitIdentification.identifyOrbit(g) + " + ";
-
-			}
-			result = result.substring(0, result.length() - 2);
-			result += "= S_P_";
-			result += OrbitIdentification.identifyOrbit(rhsOrbit) + " (x";
-			for (int i = 0; i < rhsOrbit.order() - 1; i++) {
-				result += "," + (char) ('a' + i);
-			}
-			result += ") ";
-			for (int i = 0; i < rhsConnected.size(); i++) {
-				result += rhsFormula(rhsConnected.get(i), rhsOrbit);
-				result += " + ";
-			}
-			result = result.substring(0, result.length() - 2);
-			result += "\n";
-			return result;
-		}
+		return EquationWriter.toString(this,
+				Program.latex ? EquationWriter.Format.LATEX
+						: EquationWriter.Format.PLAIN);
 	}
 
 	/**
@@ -163,7 +170,7 @@ public class Equation {
 			boolean b = true;
 			for (int j = 0; j < connect.size() && b; j++) {
 				if (connect.get(j) != i)
-					b = g.getEdges().contains(new Edge(i, connect.get(j)));
+					b = g.hasEdge(i, connect.get(j));
 				else
 					b = false;
 			}
@@ -197,7 +204,7 @@ public class Equation {
 			boolean b = true;
 			for (int j = 0; j < connect.size() && b; j++) {
 				if (connect.get(j) != i)
-					b = g.getEdges().contains(new Edge(i, connect.get(j)));
+					b = g.hasEdge(i, connect.get(j));
 				else
 					b = false;
 			}
@@ -215,13 +222,34 @@ public class Equation {
 	}
 
 	/**
-	 * Returns the left-hand side of the equation in map form.
+	 * Returns the numbers of the orbits in the left-hand side of the equation.
 	 * 
-	 * @return A Map containing the left-hand side of the equation: the keys are
-	 *         the orbits, their values are their factors.
+	 * @return The numbers of the orbits in the left-hand side, in ascending
+	 *         order.
 	 */
-	public Map<OrbitRepresentative, Integer> getLhs() {
-		return lhs;
+	public int[] getLhsOrbits() {
+		return lhsOrbits;
+	}
+
+	/**
+	 * Returns the adjacency of the graphlet each orbit in the left-hand side
+	 * was made from.
+	 * 
+	 * @return The adjacency bitmasks, in the same order as
+	 *         {@link #getLhsOrbits()}.
+	 */
+	public long[] getLhsAdjacency() {
+		return lhsAdjacency;
+	}
+
+	/**
+	 * Returns the factors of the orbits in the left-hand side of the equation.
+	 * 
+	 * @return The factors of the orbits in the left-hand side, in the same
+	 *         order as {@link #getLhsOrbits()}.
+	 */
+	public int[] getLhsCounts() {
+		return lhsCounts;
 	}
 
 	/**
@@ -233,6 +261,37 @@ public class Equation {
 		return rhsOrbit;
 	}
 
+	/**
+	 * Returns the number of the orbit in the right-hand side of the equation.
+	 * 
+	 * @return The number of the orbit in the right-hand side of the equation.
+	 */
+	public int getRhsId() {
+		return rhsId;
+	}
+
+	/**
+	 * Returns the sets of common nodes in the right-hand side, one for each
+	 * term.
+	 * 
+	 * @return A list containing, for each term in the right-hand side, the
+	 *         nodes of which the common neighbours are counted.
+	 */
+	public List<List<Integer>> getRhsConnected() {
+		return rhsConnected;
+	}
+
+	/**
+	 * Returns the negative term of each term in the right-hand side, as
+	 * calculated by {@link #minus(List, OrbitRepresentative)}.
+	 * 
+	 * @return An array containing, for each term in the right-hand side, the
+	 *         number that is subtracted from its number of common neighbours.
+	 */
+	public int[] getRhsMinus() {
+		return rhsMinus;
+	}
+
 	/**
 	 * Returns the total negative term in the right-hand side.
 	 * 
@@ -248,7 +307,7 @@ public class Equation {
 	 * @return The number of the lowest orbit in this equation's left-hand side.
 	 */
 	public int getLowestOrbit() {
-		return OrbitIdentification.identifyOrbit(lhs.firstKey());
+		return lhsOrbits[0];
 	}
 
 }
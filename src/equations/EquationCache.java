@@ -0,0 +1,297 @@
+package equations;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+public class EquationCache {
+
+	/**
+	 * The first four bytes of every cache entry: "EQNC".
+	 */
+	public static final int MAGIC = 0x45514E43;
+
+	/**
+	 * The version of the format, to be raised whenever the layout or the way
+	 * equations are generated changes. Entries of other versions are rebuilt.
+	 */
+	public static final int VERSION = 1;
+
+	private File directory;
+
+	/**
+	 * Creates a cache of generated equations in the given directory, which is
+	 * created when the first entry is stored.
+	 *
+	 * Every entry holds the equations of one order for one catalog, and is
+	 * named after the SHA-256 hash of the catalog file and the order. An
+	 * entry starts with the magic number, the version, the hash, the order,
+	 * the length of the rest and its CRC-32. The rest lists the numbers of the
+	 * right-hand side orbits and then every equation: the number, factor and
+	 * adjacency of every left-hand side orbit, the right-hand side orbit, the
+	 * total negative term, and every right-hand side term as a bitmask of
+	 * its common nodes with its negative term.
+	 *
+	 * @param directory
+	 *            The directory the entries are kept in.
+	 */
+	public EquationCache(File directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Returns the equations of the given order for a catalog, from the cache
+	 * if there is a valid entry and otherwise by generating them and storing
+	 * them in the cache. An entry that cannot be read, was written by another
+	 * version or does not match the catalog is replaced. Failing to store an
+	 * entry is not an error.
+	 *
+	 * @param filename
+	 *            The name of the catalog file.
+	 * @param catalog
+	 *            The catalog read from that file.
+	 * @param order
+	 *            The order of the graphlets that can be counted with the
+	 *            equations.
+	 * @param parallelism
+	 *            The number of threads to use if the equations have to be
+	 *            generated.
+	 * @return An EquationManager containing all equations.
+	 * @throws IOException
+	 *             If the catalog file cannot be read.
+	 */
+	public EquationManager get(String filename, OrbitCatalog catalog,
+			int order, int parallelism) throws IOException {
+		byte[] hash = hash(filename);
+		File entry = entry(hash, order);
+		EquationManager em = load(entry, hash, catalog, order);
+		if (em == null) {
+			em = Program.generateEquations(catalog, order, parallelism);
+			try {
+				store(entry, hash, em);
+			} catch (IOException e) {
+				// the entry on disk, if any, is rejected again next time
+			}
+		}
+		return em;
+	}
+
+	/**
+	 * Calculates the SHA-256 hash of a file.
+	 *
+	 * @param filename
+	 *            The name of the file.
+	 * @return The hash of its contents.
+	 * @throws IOException
+	 *             If the file cannot be read.
+	 */
+	public static byte[] hash(String filename) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		InputStream in = new DigestInputStream(new FileInputStream(filename),
+				digest);
+		try {
+			byte[] buffer = new byte[8192];
+			while (in.read(buffer) != -1)
+				;
+		} finally {
+			in.close();
+		}
+		return digest.digest();
+	}
+
+	private File entry(byte[] hash, int order) {
+		StringBuilder name = new StringBuilder();
+		for (byte b : hash) {
+			name.append(String.format("%02x", b));
+		}
+		return new File(directory, name + "-" + order + ".eqc");
+	}
+
+	/**
+	 * Reads an entry, or returns null if it does not exist or is not valid.
+	 */
+	private EquationManager load(File entry, byte[] hash,
+			OrbitCatalog catalog, int order) {
+		if (!entry.isFile()) {
+			return null;
+		}
+		try {
+			DataInputStream in = new DataInputStream(new FileInputStream(entry));
+			try {
+				byte[] stored = new byte[hash.length];
+				if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+					return null;
+				}
+				in.readFully(stored);
+				if (!Arrays.equals(stored, hash) || in.readInt() != order) {
+					return null;
+				}
+				int length = in.readInt();
+				if (length < 0 || length > entry.length()) {
+					return null;
+				}
+				byte[] payload = new byte[length];
+				int checksum = in.readInt();
+				in.readFully(payload);
+				CRC32 crc = new CRC32();
+				crc.update(payload);
+				if ((int) crc.getValue() != checksum || in.read() != -1) {
+					return null;
+				}
+				DataInputStream data = new DataInputStream(
+						new ByteArrayInputStream(payload));
+				EquationManager em = decode(data, catalog, order);
+				// bytes left over mean the entry was not written like this
+				return data.available() != 0 ? null : em;
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			return null;
+		} catch (RuntimeException e) {
+			// numbers that do not fit the catalog
+			return null;
+		}
+	}
+
+	private static EquationManager decode(DataInputStream in,
+			OrbitCatalog catalog, int order) throws IOException {
+		List<OrbitRepresentative> rhsOrbits = new ArrayList<OrbitRepresentative>();
+		for (int n = in.readInt(); n > 0; n--) {
+			rhsOrbits.add(catalog.getOrbit(in.readInt()));
+		}
+		Equation[] equ = new Equation[in.readInt()];
+		if (equ.length != catalog.getNOrbitsForOrder(order) - 1) {
+			return null;
+		}
+		for (int i = 0; i < equ.length; i++) {
+			if (!in.readBoolean()) {
+				continue;
+			}
+			int terms = in.readInt();
+			int[] lhsOrbits = new int[terms];
+			int[] lhsCounts = new int[terms];
+			long[] lhsAdjacency = new long[terms];
+			for (int j = 0; j < terms; j++) {
+				lhsOrbits[j] = in.readInt();
+				lhsCounts[j] = in.readInt();
+				lhsAdjacency[j] = in.readLong();
+			}
+			OrbitRepresentative rhsOrbit = catalog.getOrbit(in.readInt());
+			int minus = in.readInt();
+			terms = in.readInt();
+			List<List<Integer>> rhsConnected = new ArrayList<List<Integer>>(
+					terms);
+			int[] rhsMinus = new int[terms];
+			for (int j = 0; j < terms; j++) {
+				int mask = in.readInt();
+				List<Integer> common = new ArrayList<Integer>();
+				for (int k = 0; k < 32; k++) {
+					if ((mask & (1 << k)) != 0) {
+						common.add(k);
+					}
+				}
+				rhsConnected.add(common);
+				rhsMinus[j] = in.readInt();
+			}
+			equ[i] = new Equation(lhsOrbits, lhsCounts, lhsAdjacency,
+					rhsOrbit, rhsConnected, rhsMinus, minus);
+		}
+		return new EquationManager(catalog, order, equ, rhsOrbits);
+	}
+
+	/**
+	 * Writes an entry to a temporary file first, which then replaces the
+	 * entry, so an interrupted run never leaves half an entry behind. The old
+	 * entry is only deleted first where the file system cannot rename a file
+	 * onto an existing one, and the temporary file is removed if anything
+	 * fails.
+	 */
+	private void store(File entry, byte[] hash, EquationManager em)
+			throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream data = new DataOutputStream(bytes);
+		data.writeInt(em.getRhsOrbits().size());
+		for (OrbitRepresentative og : em.getRhsOrbits()) {
+			data.writeInt(og.id());
+		}
+		data.writeInt(em.getEqu().length);
+		for (Equation e : em.getEqu()) {
+			data.writeBoolean(e != null);
+			if (e == null) {
+				continue;
+			}
+			data.writeInt(e.getLhsOrbits().length);
+			for (int j = 0; j < e.getLhsOrbits().length; j++) {
+				data.writeInt(e.getLhsOrbits()[j]);
+				data.writeInt(e.getLhsCounts()[j]);
+				data.writeLong(e.getLhsAdjacency()[j]);
+			}
+			data.writeInt(e.getRhsId());
+			data.writeInt(e.getMinus());
+			data.writeInt(e.getRhsConnected().size());
+			for (int j = 0; j < e.getRhsConnected().size(); j++) {
+				int mask = 0;
+				for (int node : e.getRhsConnected().get(j)) {
+					mask |= 1 << node;
+				}
+				data.writeInt(mask);
+				data.writeInt(e.getRhsMinus()[j]);
+			}
+		}
+		data.flush();
+		byte[] payload = bytes.toByteArray();
+		CRC32 crc = new CRC32();
+		crc.update(payload);
+		directory.mkdirs();
+		File temporary = File.createTempFile("equations", ".tmp", directory);
+		boolean stored = false;
+		try {
+			OutputStream file = new FileOutputStream(temporary);
+			try {
+				DataOutputStream out = new DataOutputStream(file);
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.write(hash);
+				out.writeInt(em.getOrder());
+				out.writeInt(payload.length);
+				out.writeInt((int) crc.getValue());
+				out.write(payload);
+				out.flush();
+			} finally {
+				file.close();
+			}
+			stored = temporary.renameTo(entry);
+			if (!stored) {
+				entry.delete();
+				stored = temporary.renameTo(entry);
+			}
+			if (!stored) {
+				throw new IOException("Could not store " + entry);
+			}
+		} finally {
+			if (!stored) {
+				temporary.delete();
+			}
+		}
+	}
+}
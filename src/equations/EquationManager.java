@@ -7,18 +7,46 @@ public class EquationManager {
 	private Equation[] equ;
 	private SortedSet<OrbitRepresentative> rhsOrbits = new TreeSet<OrbitRepresentative>();
 	private int size;
+	private OrbitCatalog catalog;
 
 	/**
 	 * Creates a new equation manager, which holds equations to count orbits of
-	 * the given order.
+	 * the given order, numbered as in the catalog read by
+	 * {@link OrbitIdentification}.
 	 * 
 	 * @param order
 	 *            The order of the orbits to be counted with the equations in
 	 *            this equation manager.
 	 */
 	public EquationManager(int order) {
-		equ = new Equation[OrbitIdentification.getNOrbitsForOrder(order) - 1];
+		this(OrbitIdentification.getCatalog(), order);
+	}
+
+	/**
+	 * Creates a new equation manager, which holds equations to count orbits of
+	 * the given order, numbered as in the given catalog.
+	 * 
+	 * @param catalog
+	 *            The catalog the orbits in the equations come from.
+	 * @param order
+	 *            The order of the orbits to be counted with the equations in
+	 *            this equation manager.
+	 */
+	public EquationManager(OrbitCatalog catalog, int order) {
+		equ = new Equation[catalog.getNOrbitsForOrder(order) - 1];
 		this.size = order;
+		this.catalog = catalog;
+	}
+
+	/**
+	 * Creates an equation manager holding equations that were generated
+	 * before, as read by {@link EquationCache}.
+	 */
+	EquationManager(OrbitCatalog catalog, int order, Equation[] equ,
+			Collection<OrbitRepresentative> rhsOrbits) {
+		this(catalog, order);
+		this.equ = equ;
+		this.rhsOrbits.addAll(rhsOrbits);
 	}
 
 	/**
@@ -32,12 +60,16 @@ public class EquationManager {
 	 */
 	public void addEquation(Equation e) {
 		int i = e.getLowestOrbit()
-				- OrbitIdentification.getNOrbitsTotal(size - 1);
+				- catalog.getNOrbitsTotal(size - 1);
 		if (equ[i] == null) {
 			equ[i] = e;
+			Statistics.equationAdded();
 			rhsOrbits.add(e.getRhsOrbit());
-		} else if (equ[i].isCompatible(e))
+		} else if (equ[i].isCompatible(e)) {
 			equ[i].merge(e);
+			Statistics.equationMerged();
+		} else
+			Statistics.equationDropped();
 		{
 			rhsOrbits.add(e.getRhsOrbit());
 		}
@@ -60,15 +92,26 @@ public class EquationManager {
 		return rhsOrbits;
 	}
 
+	/**
+	 * Returns the order of the orbits counted with the equations in this
+	 * equation manager.
+	 * @return The order of the orbits counted with this equation manager's equations.
+	 */
+	public int getOrder() {
+		return size;
+	}
+
+	/**
+	 * Returns the catalog the orbits in the equations are numbered by.
+	 * @return The catalog of this equation manager's orbits.
+	 */
+	public OrbitCatalog getCatalog() {
+		return catalog;
+	}
+
 	public String toString() {
-		String result = "";
-		for (OrbitRepresentative og : rhsOrbits) {
-			result += og + "\n";
-		}
-		result += "\n";
-		for (Equation e : equ) {
-			result += e;
-		}
-		return result;
+		return EquationWriter.toString(this,
+				Program.latex ? EquationWriter.Format.LATEX
+						: EquationWriter.Format.PLAIN);
 	}
 }
@@ -0,0 +1,77 @@
+package equations;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Generates the equations for a range of orbits, splitting the range in two
+ * until it is small enough to handle in one thread. For every orbit, the
+ * equations for all sets of common nodes are generated together, so the
+ * equations are returned in the order in which they would be generated
+ * sequentially.
+ */
+class EquationTask extends RecursiveTask<List<Equation>> {
+
+	private static final long serialVersionUID = 1L;
+
+	private final List<OrbitRepresentative> orbits;
+	private final List<List<Integer>> commons;
+	private final OrbitInterner interner;
+	private final int from;
+	private final int to;
+	private final int threshold;
+
+	/**
+	 * Creates a task generating the equations for all combinations of the
+	 * given orbits and sets of common nodes.
+	 * 
+	 * @param orbits
+	 *            The orbits in the right-hand side.
+	 * @param commons
+	 *            The sets of nodes the added node must be connected to.
+	 * @param interner
+	 *            The interner numbering the orbits generated by all tasks.
+	 * @param parallelism
+	 *            The number of threads the work will be spread over.
+	 */
+	public EquationTask(List<OrbitRepresentative> orbits,
+			List<List<Integer>> commons, OrbitInterner interner,
+			int parallelism) {
+		this(orbits, commons, interner, 0, orbits.size(), Math.max(1,
+				orbits.size() / (8 * parallelism)));
+	}
+
+	private EquationTask(List<OrbitRepresentative> orbits,
+			List<List<Integer>> commons, OrbitInterner interner, int from,
+			int to, int threshold) {
+		this.orbits = orbits;
+		this.commons = commons;
+		this.interner = interner;
+		this.from = from;
+		this.to = to;
+		this.threshold = threshold;
+	}
+
+	@Override
+	protected List<Equation> compute() {
+		if (to - from <= threshold) {
+			List<Equation> result = new ArrayList<Equation>((to - from)
+					* commons.size());
+			for (int k = from; k < to; k++) {
+				result.addAll(Program.generateEquations(orbits.get(k), commons,
+						interner));
+			}
+			return result;
+		}
+		int middle = (from + to) >>> 1;
+		EquationTask left = new EquationTask(orbits, commons, interner, from,
+				middle, threshold);
+		EquationTask right = new EquationTask(orbits, commons, interner,
+				middle, to, threshold);
+		left.fork();
+		List<Equation> result = right.compute();
+		result.addAll(0, left.join());
+		return result;
+	}
+}
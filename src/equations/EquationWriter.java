@@ -0,0 +1,358 @@
+package equations;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.List;
+
+public class EquationWriter {
+
+	/**
+	 * The formats in which equations can be written.
+	 *
+	 * PLAIN and LATEX give the human-readable and LaTeX forms that the
+	 * toString methods have always produced. JSON writes one object with the
+	 * orbit definitions and the equations. CSV writes one row per definition,
+	 * per left-hand side term and per right-hand side term, with the columns
+	 * equation, side, orbit, coefficient, nodes and minus.
+	 */
+	public enum Format {
+		PLAIN, LATEX, JSON, CSV
+	}
+
+	private Writer out;
+
+	/**
+	 * Creates a new equation writer writing to the given Writer.
+	 *
+	 * @param out
+	 *            The Writer the equations will be written to.
+	 */
+	public EquationWriter(Writer out) {
+		this.out = out;
+	}
+
+	/**
+	 * Creates a new equation writer writing to the given stream, using the
+	 * platform's default character set.
+	 *
+	 * @param out
+	 *            The stream the equations will be written to.
+	 */
+	public EquationWriter(OutputStream out) {
+		this(new BufferedWriter(new OutputStreamWriter(out)));
+	}
+
+	/**
+	 * Writes the definitions of all right-hand side orbits of an equation
+	 * manager, followed by all its equations. Every definition and equation is
+	 * written as soon as it is formatted, so the output is never held in
+	 * memory as a whole.
+	 *
+	 * @param em
+	 *            The equation manager to be written.
+	 * @param format
+	 *            The format to write in.
+	 * @throws IOException
+	 *             If the underlying Writer fails.
+	 */
+	public void write(EquationManager em, Format format) throws IOException {
+		boolean first = true;
+		switch (format) {
+		case JSON:
+			out.write("{\"order\":" + em.getOrder() + ",\"orbits\":[");
+			for (OrbitRepresentative og : em.getRhsOrbits()) {
+				if (!first)
+					out.write(',');
+				writeOrbit(og, format);
+				first = false;
+			}
+			out.write("],\"equations\":[");
+			first = true;
+			for (Equation e : em.getEqu()) {
+				if (e == null)
+					continue;
+				if (!first)
+					out.write(',');
+				writeEquation(e, format);
+				first = false;
+			}
+			out.write("]}\n");
+			break;
+		case CSV:
+			out.write("equation,side,orbit,coefficient,nodes,minus\n");
+			writeRows(em);
+			break;
+		default:
+			for (OrbitRepresentative og : em.getRhsOrbits()) {
+				writeOrbit(og, format);
+				out.write('\n');
+			}
+			out.write('\n');
+			for (Equation e : em.getEqu()) {
+				if (e != null)
+					writeEquation(e, format);
+			}
+		}
+	}
+
+	/**
+	 * Writes the equations of several equation managers, as
+	 * {@link #write(EquationManager, Format)} does for each. PLAIN and LATEX
+	 * managers are each followed by an empty line, JSON managers are written
+	 * one per line, and CSV rows of all managers share one header.
+	 * 
+	 * @param ems
+	 *            The equation managers to be written.
+	 * @param format
+	 *            The format to write in.
+	 * @throws IOException
+	 *             If the underlying Writer fails.
+	 */
+	public void write(List<EquationManager> ems, Format format)
+			throws IOException {
+		for (int i = 0; i < ems.size(); i++) {
+			if (format == Format.CSV && i > 0) {
+				writeRows(ems.get(i));
+			} else {
+				write(ems.get(i), format);
+			}
+			if (format == Format.PLAIN || format == Format.LATEX)
+				out.write('\n');
+		}
+	}
+
+	private void writeRows(EquationManager em) throws IOException {
+		for (OrbitRepresentative og : em.getRhsOrbits()) {
+			writeOrbit(og, Format.CSV);
+		}
+		for (Equation e : em.getEqu()) {
+			if (e != null)
+				writeEquation(e, Format.CSV);
+		}
+	}
+
+	/**
+	 * Writes the definition of an orbit: which edges are and which are not
+	 * present between its nodes. No line break is written after PLAIN and
+	 * LATEX definitions.
+	 *
+	 * @param og
+	 *            The orbit to be written.
+	 * @param format
+	 *            The format to write in.
+	 * @throws IOException
+	 *             If the underlying Writer fails.
+	 */
+	public void writeOrbit(OrbitRepresentative og, Format format)
+			throws IOException {
+		int name = og.id();
+		int order = og.order();
+		switch (format) {
+		case JSON:
+			out.write("{\"orbit\":" + name + ",\"order\":" + order
+					+ ",\"edges\":[");
+			boolean first = true;
+			for (int j = 1; j < order; j++) {
+				for (int i = 0; i < j; i++) {
+					if (og.hasEdge(i, j)) {
+						out.write((first ? "[" : ",[") + i + "," + j + "]");
+						first = false;
+					}
+				}
+			}
+			out.write("]}");
+			break;
+		case CSV:
+			out.write(",definition," + name + ",,");
+			String separator = "";
+			for (int i = 0; i < order - 1; i++) {
+				for (int j = i + 1; j < order; j++) {
+					if (og.hasEdge(i, j)) {
+						out.write(separator + nodeName(i) + "-" + nodeName(j));
+						separator = " ";
+					}
+				}
+			}
+			out.write(",\n");
+			break;
+		default:
+			boolean latex = format == Format.LATEX;
+			out.write(latex ? "\\[\\begin{split}P_{" + name + "}("
+					: "P_" + name + " (");
+			writeNodeList(order);
+			out.write(") = ");
+			out.write(latex ? "\\{ &\\{" : "{{");
+			writeNodeList(order);
+			out.write(latex ? " \\} \\subset V(G) | \\\\" : "} in V(G) | ");
+			int edges = 0;
+			for (int j = 1; j < order; j++) {
+				for (int i = 0; i < j; i++) {
+					if (og.hasEdge(i, j))
+						edges++;
+				}
+			}
+			int noEdges = order * (order - 1) / 2 - edges;
+			if (edges != 0) {
+				out.write(latex ? "&\\{" : "{");
+				writeEdges(og, true, latex);
+				out.write(latex ? "\\} \\subset E(G) " : "} in E(G)");
+				if (noEdges != 0) {
+					out.write(latex ? "\\wedge \\\\" : " & ");
+				}
+			}
+			if (noEdges != 0) {
+				out.write(latex ? "&\\{" : "{");
+				writeEdges(og, false, latex);
+				out.write(latex ? " \\} \\cap E(G) = \\emptyset "
+						: "} not in E(G)");
+			}
+			out.write(latex ? "\\}\\end{split} \\]" : "}");
+		}
+	}
+
+	/**
+	 * Writes one equation. PLAIN, LATEX and CSV equations end with a line
+	 * break.
+	 *
+	 * @param e
+	 *            The equation to be written.
+	 * @param format
+	 *            The format to write in.
+	 * @throws IOException
+	 *             If the underlying Writer fails.
+	 */
+	public void writeEquation(Equation e, Format format) throws IOException {
+		OrbitRepresentative rhsOrbit = e.getRhsOrbit();
+		int rhs = e.getRhsId();
+		int[] orbits = e.getLhsOrbits();
+		int[] counts = e.getLhsCounts();
+		List<List<Integer>> connected = e.getRhsConnected();
+		int[] minus = e.getRhsMinus();
+		switch (format) {
+		case JSON:
+			out.write("{\"lhs\":[");
+			for (int i = 0; i < orbits.length; i++) {
+				out.write((i == 0 ? "" : ",") + "{\"orbit\":" + orbits[i]
+						+ ",\"coefficient\":" + counts[i] + "}");
+			}
+			out.write("],\"rhs\":" + rhs + ",\"terms\":[");
+			for (int i = 0; i < connected.size(); i++) {
+				out.write((i == 0 ? "" : ",") + "{\"common\":"
+						+ connected.get(i) + ",\"minus\":" + minus[i] + "}");
+			}
+			out.write("],\"minus\":" + e.getMinus() + "}");
+			break;
+		case CSV:
+			int lowest = e.getLowestOrbit();
+			for (int i = 0; i < orbits.length; i++) {
+				out.write(lowest + ",lhs," + orbits[i] + "," + counts[i]
+						+ ",,\n");
+			}
+			for (int i = 0; i < connected.size(); i++) {
+				List<Integer> common = connected.get(i);
+				out.write(lowest + ",rhs," + rhs + ",,");
+				for (int j = 0; j < common.size(); j++) {
+					out.write((j == 0 ? "" : " ") + nodeName(common.get(j)));
+				}
+				out.write("," + minus[i] + "\n");
+			}
+			break;
+		default:
+			boolean latex = format == Format.LATEX;
+			if (latex)
+				out.write("\\[");
+			for (int i = 0; i < orbits.length; i++) {
+				out.write((i == 0 ? "" : " + ")
+						+ (counts[i] == 1 ? "" : counts[i])
+						+ (latex ? "o_{" : "o_") + orbits[i]
+						+ (latex ? "}" : ""));
+			}
+			out.write(latex ? " = \\sum\\limits_{P_{" + rhs + "} (x" : " = S_P_"
+					+ rhs + " (x");
+			for (int i = 0; i < rhsOrbit.order() - 1; i++) {
+				out.write(',');
+				out.write('a' + i);
+			}
+			out.write(latex ? ")} " : ") ");
+			for (int i = 0; i < connected.size(); i++) {
+				if (i != 0)
+					out.write(" + ");
+				out.write(Equation.rhsFormula(connected.get(i), rhsOrbit));
+			}
+			out.write(latex ? " \\]\n" : " \n");
+		}
+	}
+
+	/**
+	 * Flushes the underlying Writer.
+	 *
+	 * @throws IOException
+	 *             If the underlying Writer fails.
+	 */
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	/**
+	 * Formats an equation manager, orbit or equation as a String.
+	 *
+	 * @param o
+	 *            An EquationManager, OrbitRepresentative or Equation.
+	 * @param format
+	 *            The format to write in.
+	 * @return The formatted object.
+	 */
+	public static String toString(Object o, Format format) {
+		StringWriter sw = new StringWriter();
+		EquationWriter w = new EquationWriter(sw);
+		try {
+			if (o instanceof EquationManager)
+				w.write((EquationManager) o, format);
+			else if (o instanceof OrbitRepresentative)
+				w.writeOrbit((OrbitRepresentative) o, format);
+			else
+				w.writeEquation((Equation) o, format);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return sw.toString();
+	}
+
+	/**
+	 * Returns the name of a node: 'x' for node 0, 'a' for node 1 and so on.
+	 */
+	static char nodeName(int node) {
+		return node == 0 ? 'x' : (char) ('a' + node - 1);
+	}
+
+	private void writeNodeList(int order) throws IOException {
+		out.write('x');
+		for (int i = 0; i < order - 1; i++) {
+			out.write(',');
+			out.write('a' + i);
+		}
+	}
+
+	private void writeEdges(OrbitRepresentative og, boolean present,
+			boolean latex) throws IOException {
+		boolean first = true;
+		for (int i = 0; i < og.order() - 1; i++) {
+			for (int j = i + 1; j < og.order(); j++) {
+				if (og.hasEdge(i, j) == present) {
+					if (!first)
+						out.write(", ");
+					out.write(latex ? "\\{" : "{");
+					out.write(nodeName(i));
+					out.write(',');
+					out.write(nodeName(j));
+					out.write(latex ? "\\}" : "}");
+					first = false;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,60 @@
+package equations;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Generates the canonical extensions of a range of orbits, splitting the
+ * range in two until it is small enough to handle in one thread. The
+ * extensions are returned in the order in which they would be generated
+ * sequentially.
+ */
+class ExtensionTask extends RecursiveTask<List<OrbitRepresentative>> {
+
+	private static final long serialVersionUID = 1L;
+
+	private final List<OrbitRepresentative> orbits;
+	private final int from;
+	private final int to;
+	private final int threshold;
+
+	/**
+	 * Creates a task generating the canonical extensions of all given orbits.
+	 * 
+	 * @param orbits
+	 *            The orbits to be extended.
+	 * @param parallelism
+	 *            The number of threads the work will be spread over.
+	 */
+	public ExtensionTask(List<OrbitRepresentative> orbits, int parallelism) {
+		this(orbits, 0, orbits.size(), Math.max(1, orbits.size()
+				/ (8 * parallelism)));
+	}
+
+	private ExtensionTask(List<OrbitRepresentative> orbits, int from, int to,
+			int threshold) {
+		this.orbits = orbits;
+		this.from = from;
+		this.to = to;
+		this.threshold = threshold;
+	}
+
+	@Override
+	protected List<OrbitRepresentative> compute() {
+		if (to - from <= threshold) {
+			List<OrbitRepresentative> result = new ArrayList<OrbitRepresentative>();
+			for (int k = from; k < to; k++) {
+				result.addAll(CatalogGenerator.extend(orbits.get(k)));
+			}
+			return result;
+		}
+		int middle = (from + to) >>> 1;
+		ExtensionTask left = new ExtensionTask(orbits, from, middle, threshold);
+		ExtensionTask right = new ExtensionTask(orbits, middle, to, threshold);
+		left.fork();
+		List<OrbitRepresentative> result = right.compute();
+		result.addAll(0, left.join());
+		return result;
+	}
+}
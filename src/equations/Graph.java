@@ -0,0 +1,299 @@
+package equations;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+public class Graph {
+
+	/**
+	 * The neighbours of a graph mapped from a file are kept in segments of
+	 * 2^SEGMENT_SHIFT entries, as a single buffer cannot hold more than 2^31
+	 * bytes.
+	 */
+	static final int SEGMENT_SHIFT = 28;
+	static final int SEGMENT_MASK = (1 << SEGMENT_SHIFT) - 1;
+
+	private final int size;
+	// on the heap
+	private final int[] offsets;
+	private final int[] neighbours;
+	// mapped from a file
+	private final IntBuffer mappedOffsets;
+	private final IntBuffer[] segments;
+	private final IntBuffer labels;
+	private CommonNeighbours index;
+
+	/**
+	 * Creates an undirected graph from a list of edges. Loops and edges given
+	 * more than once are left out. The neighbours of every node are kept in
+	 * one sorted array, so that nodes can be tested for adjacency by binary
+	 * search. The graph is kept on the heap; see {@link BinaryGraph} for
+	 * graphs mapped from a file.
+	 *
+	 * @param nodes
+	 *            The number of nodes, numbered from 0.
+	 * @param edges
+	 *            The edges, as the two end points of the first edge, followed
+	 *            by those of the second edge, and so on.
+	 * @param length
+	 *            The number of end points used in the edge array: twice the
+	 *            number of edges.
+	 */
+	public Graph(int nodes, int[] edges, int length) {
+		int[] degrees = new int[nodes + 1];
+		for (int i = 0; i < length; i += 2) {
+			if (edges[i] != edges[i + 1]) {
+				degrees[edges[i]]++;
+				degrees[edges[i + 1]]++;
+			}
+		}
+		int[] start = new int[nodes + 1];
+		for (int v = 0; v < nodes; v++) {
+			start[v + 1] = start[v] + degrees[v];
+		}
+		int[] all = new int[start[nodes]];
+		int[] next = Arrays.copyOf(start, nodes);
+		for (int i = 0; i < length; i += 2) {
+			int u = edges[i];
+			int v = edges[i + 1];
+			if (u != v) {
+				all[next[u]++] = v;
+				all[next[v]++] = u;
+			}
+		}
+		// sort every row and drop duplicates, compacting the array
+		offsets = new int[nodes + 1];
+		int n = 0;
+		for (int v = 0; v < nodes; v++) {
+			Arrays.sort(all, start[v], start[v + 1]);
+			offsets[v] = n;
+			for (int i = start[v]; i < start[v + 1]; i++) {
+				if (i == start[v] || all[i] != all[i - 1]) {
+					all[n++] = all[i];
+				}
+			}
+		}
+		offsets[nodes] = n;
+		neighbours = Arrays.copyOf(all, n);
+		size = nodes;
+		mappedOffsets = null;
+		segments = null;
+		labels = null;
+	}
+
+	/**
+	 * Creates a graph from buffers that are already laid out, as they are
+	 * mapped by {@link BinaryGraph}.
+	 *
+	 * @param offsets
+	 *            For every node and one more, the position of its first
+	 *            neighbour among the neighbours of all nodes.
+	 * @param neighbours
+	 *            The sorted neighbours of all nodes, in segments of
+	 *            2^SEGMENT_SHIFT entries.
+	 * @param labels
+	 *            For every node, its number in the graph it was read from, or
+	 *            null if it kept its number.
+	 */
+	Graph(IntBuffer offsets, IntBuffer[] neighbours, IntBuffer labels) {
+		size = offsets.capacity() - 1;
+		this.offsets = null;
+		this.neighbours = null;
+		mappedOffsets = offsets;
+		segments = neighbours;
+		this.labels = labels;
+	}
+
+	/**
+	 * Reads a graph from a text file listing one edge per line as the numbers
+	 * of its two end points, separated by white space. Empty lines and lines
+	 * starting with '#' or '%' are skipped. Nodes are numbered from 0; the
+	 * graph has as many nodes as the highest number plus one. A binary graph
+	 * written by {@link BinaryGraph} is mapped instead.
+	 *
+	 * @param filename
+	 *            The name of the file.
+	 * @return The graph in the file.
+	 * @throws IOException
+	 *             If the file cannot be read or a line is not an edge.
+	 */
+	public static Graph read(String filename) throws IOException {
+		if (BinaryGraph.isBinaryGraph(filename)) {
+			return BinaryGraph.map(filename);
+		}
+		int[] edges = new int[1024];
+		int length = 0;
+		int nodes = 0;
+		BufferedReader in = new BufferedReader(new FileReader(filename));
+		try {
+			String line;
+			int number = 0;
+			while ((line = in.readLine()) != null) {
+				number++;
+				line = line.trim();
+				if (line.isEmpty() || line.charAt(0) == '#'
+						|| line.charAt(0) == '%') {
+					continue;
+				}
+				String[] parts = line.split("\\s+");
+				if (parts.length < 2) {
+					throw new IOException("Line " + number + " of " + filename
+							+ " is not an edge.");
+				}
+				if (length == edges.length) {
+					edges = Arrays.copyOf(edges, 2 * length);
+				}
+				try {
+					edges[length] = Integer.parseInt(parts[0]);
+					edges[length + 1] = Integer.parseInt(parts[1]);
+				} catch (NumberFormatException e) {
+					throw new IOException("Line " + number + " of " + filename
+							+ " is not an edge.");
+				}
+				if (edges[length] < 0 || edges[length + 1] < 0) {
+					throw new IOException("Line " + number + " of " + filename
+							+ " is not an edge.");
+				}
+				nodes = Math.max(nodes,
+						Math.max(edges[length], edges[length + 1]) + 1);
+				length += 2;
+			}
+		} finally {
+			in.close();
+		}
+		return new Graph(nodes, edges, length);
+	}
+
+	/**
+	 *
+	 * @return The number of nodes of this graph.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 *
+	 * @return The number of edges of this graph.
+	 */
+	public long edges() {
+		return start(size) / 2;
+	}
+
+	/**
+	 * Returns the number a node had in the graph this one was read from.
+	 * Nodes of a graph written by {@link BinaryGraph} are numbered by
+	 * decreasing degree; other graphs keep the numbers they were given.
+	 *
+	 * @param v
+	 *            A node of this graph.
+	 * @return The original number of the node.
+	 */
+	public int label(int v) {
+		return labels == null ? v : labels.get(v);
+	}
+
+	/**
+	 *
+	 * @param v
+	 *            A node of this graph.
+	 * @return The number of neighbours of the node.
+	 */
+	public int degree(int v) {
+		return start(v + 1) - start(v);
+	}
+
+	/**
+	 * Returns a neighbour of a node. The neighbours of every node are sorted
+	 * by number.
+	 *
+	 * @param v
+	 *            A node of this graph.
+	 * @param i
+	 *            The index of the neighbour, from 0 to the degree of the node.
+	 * @return The i-th neighbour of the node.
+	 */
+	public int neighbour(int v, int i) {
+		return target(start(v) + i);
+	}
+
+	/**
+	 * Checks whether two nodes are connected, searching the neighbours of the
+	 * node with the lowest degree.
+	 *
+	 * @param u
+	 *            A node of this graph.
+	 * @param v
+	 *            Another node of this graph.
+	 * @return True if there is an edge between both nodes.
+	 */
+	public boolean hasEdge(int u, int v) {
+		if (degree(u) > degree(v)) {
+			int w = u;
+			u = v;
+			v = w;
+		}
+		int low = start(u);
+		int high = start(u + 1) - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int w = target(middle);
+			if (w < v) {
+				low = middle + 1;
+			} else if (w > v) {
+				high = middle - 1;
+			} else {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Counts the nodes connected to all of the given nodes, with the index of
+	 * this graph.
+	 *
+	 * @param nodes
+	 *            An array holding the nodes.
+	 * @param k
+	 *            The number of nodes in the array to be used, at least 1.
+	 * @return The number of common neighbours of the first k nodes.
+	 */
+	public int commonNeighbours(int[] nodes, int k) {
+		return index().count(nodes, k);
+	}
+
+	/**
+	 * Returns the index counting common neighbours in this graph, which is
+	 * built with the default budget when it is first asked for.
+	 *
+	 * @return The index of this graph.
+	 */
+	public synchronized CommonNeighbours index() {
+		if (index == null) {
+			index = new CommonNeighbours(this);
+		}
+		return index;
+	}
+
+	/**
+	 *
+	 * @return The position of the first neighbour of v among the neighbours of
+	 *         all nodes; the neighbours of v end where those of v + 1 start.
+	 */
+	int start(int v) {
+		return offsets != null ? offsets[v] : mappedOffsets.get(v);
+	}
+
+	/**
+	 *
+	 * @return The neighbour at a position among the neighbours of all nodes.
+	 */
+	int target(int i) {
+		return neighbours != null ? neighbours[i]
+				: segments[i >>> SEGMENT_SHIFT].get(i & SEGMENT_MASK);
+	}
+}
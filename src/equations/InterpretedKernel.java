@@ -0,0 +1,176 @@
+package equations;
+
+import java.util.Arrays;
+
+/**
+ * A kernel that walks the patterns and equations of an {@link OrbitCounter}
+ * for every node. It needs no compilation, but pays for reading the patterns
+ * and terms in the innermost loops; see {@link KernelCompiler} for kernels
+ * with those inlined.
+ */
+class InterpretedKernel extends Kernel {
+
+	private final OrbitCounter counter;
+	private final Equation[] equ;
+	private final int[] mapping;
+	private final int[] nodes;
+	private final long[] common;
+	private final int[] seen;
+	private int stamp;
+	private final long[] rhs;
+
+	/**
+	 * Creates a kernel evaluating the equations of a counter on a graph.
+	 */
+	InterpretedKernel(OrbitCounter counter, Graph graph) {
+		super(graph, counter.getEquationManager().getOrder());
+		this.counter = counter;
+		equ = counter.getEquationManager().getEqu();
+		int order = counter.getEquationManager().getOrder();
+		mapping = new int[order];
+		nodes = new int[order];
+		common = new long[1 << order];
+		seen = new int[1 << order];
+		rhs = new long[equ.length];
+	}
+
+	/**
+	 * Counts the last orbit directly and the others by solving the equations.
+	 */
+	@Override
+	protected long[] evaluate(int x) {
+		long[] result = new long[equ.length + 1];
+		mapping[0] = x;
+		result[equ.length] = search(counter.getDirect(), 1);
+		Arrays.fill(rhs, 0);
+		for (Pattern pattern : counter.getPatterns()) {
+			search(pattern, 1);
+		}
+		int first = counter.getFirstOrbit();
+		for (int i = equ.length - 1; i >= 0; i--) {
+			int[] orbits = equ[i].getLhsOrbits();
+			int[] factors = equ[i].getLhsCounts();
+			long rest = rhs[i];
+			for (int j = 1; j < orbits.length; j++) {
+				rest -= factors[j] * result[orbits[j] - first];
+			}
+			result[i] = solve(rest, factors[0], i);
+		}
+		return result;
+	}
+
+	/**
+	 * Maps the nodes of a pattern from the given position on, and adds the
+	 * right-hand sides of its equations for every occurrence found.
+	 *
+	 * @return The number of occurrences found.
+	 */
+	private long search(Pattern pattern, int p) {
+		if (p == pattern.order) {
+			occurrence(pattern);
+			return 1;
+		}
+		// the candidates are the neighbours of the mapped node of lowest
+		// degree that the node must be connected to
+		int parent = -1;
+		for (int c = pattern.connected[p]; c != 0; c &= c - 1) {
+			int v = mapping[Integer.numberOfTrailingZeros(c)];
+			if (parent < 0 || degree(v) < degree(parent)) {
+				parent = v;
+			}
+		}
+		int node = pattern.nodes[p];
+		long found = 0;
+		for (int i = 0; i < degree(parent); i++) {
+			int v = neighbour(parent, i);
+			if (fits(pattern, p, v)) {
+				mapping[node] = v;
+				found += search(pattern, p + 1);
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Checks whether a node of the graph can be mapped onto the node of the
+	 * pattern at the given position.
+	 */
+	private boolean fits(Pattern pattern, int p, int v) {
+		if (v == mapping[0]
+				|| adjacent(v) != ((pattern.connected[p] & 1) != 0)) {
+			return false;
+		}
+		for (int q = 1; q < p; q++) {
+			int u = mapping[pattern.nodes[q]];
+			if (u == v) {
+				return false;
+			}
+			int bit = 1 << pattern.nodes[q];
+			if ((pattern.above[p] & bit) != 0 ? u > v
+					: (pattern.below[p] & bit) != 0 && u < v) {
+				return false;
+			}
+			if ((pattern.connected[p] & bit) != 0) {
+				if (!edge(u, v)) {
+					return false;
+				}
+			} else if ((pattern.disconnected[p] & bit) != 0 && edge(u, v)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Adds the right-hand side of every equation of a pattern for one
+	 * occurrence. Every set of nodes is only counted once per occurrence.
+	 */
+	private void occurrence(Pattern pattern) {
+		if (pattern.equations.length == 0) {
+			return;
+		}
+		if (++stamp == 0) {
+			Arrays.fill(seen, 0);
+			stamp = 1;
+		}
+		for (int k = 0; k < pattern.equations.length; k++) {
+			long sum = -pattern.minus[k];
+			for (int mask : pattern.terms[k]) {
+				if (seen[mask] != stamp) {
+					seen[mask] = stamp;
+					common[mask] = common(mask);
+				}
+				sum += common[mask];
+			}
+			rhs[pattern.equations[k]] += sum;
+		}
+	}
+
+	/**
+	 * Counts the common neighbours of the mapped nodes in a bitmask.
+	 */
+	private int common(int mask) {
+		int n = 0;
+		for (int m = mask & ~1; m != 0; m &= m - 1) {
+			nodes[n++] = mapping[Integer.numberOfTrailingZeros(m)];
+		}
+		if ((mask & 1) == 0) {
+			switch (n) {
+			case 1:
+				return degree(nodes[0]);
+			case 2:
+				return common(nodes[0], nodes[1]);
+			default:
+				return common(nodes, n);
+			}
+		}
+		switch (n) {
+		case 0:
+			return degree(mapping[0]);
+		case 1:
+			return shared(nodes[0]);
+		default:
+			return shared(nodes, n);
+		}
+	}
+}
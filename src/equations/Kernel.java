@@ -0,0 +1,234 @@
+package equations;
+
+/**
+ * Counts the orbits of one order for one node of a graph at a time. A kernel
+ * keeps scratch space as large as the graph, so every thread uses its own.
+ *
+ * Before a node x is handled, its neighbours are marked and the number of
+ * common neighbours with x is counted for every node within distance two, by
+ * walking the neighbours of the neighbours of x once. An edge to x and a term
+ * c(x, v) then take a single array access. Other terms are counted by the
+ * {@link CommonNeighbours} index of the graph, and the common neighbours of
+ * pairs of nodes are kept in a small cache, as the same pairs turn up in
+ * many equations and for many nodes. Subclasses find the occurrences
+ * and solve the equations; they are either interpreted from the equations or
+ * generated by {@link KernelCompiler}.
+ */
+public abstract class Kernel {
+
+	protected final Graph graph;
+	private final CommonNeighbours index;
+	private final CommonNeighbourCache cache;
+	private final int[] adjacent;
+	private final int[] shared;
+	private final int[] nodes;
+	private final int[] hubs;
+	private final int[] positions;
+	private int x;
+
+	/**
+	 * Creates a kernel for a graph.
+	 *
+	 * @param graph
+	 *            The graph.
+	 * @param order
+	 *            The order of the orbits counted.
+	 */
+	protected Kernel(Graph graph, int order) {
+		this.graph = graph;
+		index = graph.index();
+		cache = new CommonNeighbourCache(index,
+				CommonNeighbourCache.DEFAULT_CAPACITY);
+		adjacent = new int[graph.size()];
+		shared = new int[graph.size()];
+		nodes = new int[order];
+		hubs = new int[order + 1];
+		positions = new int[order + 1];
+	}
+
+	/**
+	 * Counts the orbits of a node.
+	 *
+	 * @param x
+	 *            The node.
+	 * @return The number of graphlets in which the node is in each orbit,
+	 *         starting with the lowest orbit of the order.
+	 */
+	public final long[] count(int x) {
+		this.x = x;
+		for (int i = 0; i < graph.degree(x); i++) {
+			int a = graph.neighbour(x, i);
+			adjacent[a] = x + 1;
+			for (int j = 0; j < graph.degree(a); j++) {
+				shared[graph.neighbour(a, j)]++;
+			}
+		}
+		try {
+			return evaluate(x);
+		} finally {
+			for (int i = 0; i < graph.degree(x); i++) {
+				int a = graph.neighbour(x, i);
+				for (int j = 0; j < graph.degree(a); j++) {
+					shared[graph.neighbour(a, j)] = 0;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Counts the orbits of a node, of which the neighbours have been marked.
+	 */
+	protected abstract long[] evaluate(int x);
+
+	/**
+	 *
+	 * @return True if v is a neighbour of the node being counted.
+	 */
+	protected final boolean adjacent(int v) {
+		return adjacent[v] == x + 1;
+	}
+
+	/**
+	 *
+	 * @return The number of common neighbours of v and the node being
+	 *         counted.
+	 */
+	protected final int shared(int v) {
+		return shared[v];
+	}
+
+	protected final int degree(int v) {
+		return graph.degree(v);
+	}
+
+	protected final int neighbour(int v, int i) {
+		return graph.neighbour(v, i);
+	}
+
+	protected final boolean edge(int u, int v) {
+		return index.hasEdge(u, v);
+	}
+
+	/**
+	 *
+	 * @return The number of common neighbours of u and v.
+	 */
+	protected final int common(int u, int v) {
+		return cache.count(u, v);
+	}
+
+	/**
+	 *
+	 * @return The number of common neighbours of u, v and w.
+	 */
+	protected final int common(int u, int v, int w) {
+		nodes[0] = u;
+		nodes[1] = v;
+		nodes[2] = w;
+		return index.count(nodes, 3, positions);
+	}
+
+	/**
+	 * Counts the common neighbours of some nodes, none of which is the node
+	 * being counted.
+	 *
+	 * @param nodes
+	 *            An array holding the nodes.
+	 * @param n
+	 *            The number of nodes in the array to be used.
+	 */
+	protected final int common(int[] nodes, int n) {
+		return index.count(nodes, n, positions);
+	}
+
+	/**
+	 *
+	 * @return The number of common neighbours of u, v and the node being
+	 *         counted.
+	 */
+	protected final int shared(int u, int v) {
+		nodes[0] = u;
+		nodes[1] = v;
+		return shared(nodes, 2);
+	}
+
+	/**
+	 *
+	 * @return The number of common neighbours of u, v, w and the node being
+	 *         counted.
+	 */
+	protected final int shared(int u, int v, int w) {
+		nodes[0] = u;
+		nodes[1] = v;
+		nodes[2] = w;
+		return shared(nodes, 3);
+	}
+
+	/**
+	 * Counts the common neighbours of the node being counted and at least two
+	 * other nodes. If all of them are hubs, the index intersects their rows
+	 * of bits; otherwise the neighbours of the other node of lowest degree
+	 * are walked, keeping those connected to x and the rest.
+	 *
+	 * @param nodes
+	 *            An array holding the other nodes.
+	 * @param n
+	 *            The number of nodes in the array to be used.
+	 */
+	protected final int shared(int[] nodes, int n) {
+		if (index.isHub(x)) {
+			int k = 0;
+			hubs[k++] = x;
+			while (k <= n && index.isHub(nodes[k - 1])) {
+				hubs[k] = nodes[k - 1];
+				k++;
+			}
+			if (k > n) {
+				return index.count(hubs, k, positions);
+			}
+		}
+		int lowest = 0;
+		for (int i = 1; i < n; i++) {
+			if (graph.degree(nodes[i]) < graph.degree(nodes[lowest])) {
+				lowest = i;
+			}
+		}
+		int v = nodes[lowest];
+		int count = 0;
+		for (int i = 0; i < graph.degree(v); i++) {
+			int w = graph.neighbour(v, i);
+			if (adjacent[w] != x + 1) {
+				continue;
+			}
+			boolean all = true;
+			for (int j = 0; j < n && all; j++) {
+				all = j == lowest || index.hasEdge(w, nodes[j]);
+			}
+			if (all) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Adds the use of the cache of this kernel to the {@link Statistics}.
+	 */
+	final void report() {
+		Statistics.pairCache(cache.getHits(), cache.getMisses());
+	}
+
+	/**
+	 * Divides the remainder of an equation by the factor of its lowest orbit.
+	 *
+	 * @throws IllegalStateException
+	 *             If the factor does not divide the remainder.
+	 */
+	protected final long solve(long rest, int factor, int equation) {
+		if (rest % factor != 0) {
+			throw new IllegalStateException("Equation " + equation
+					+ " has no integer solution for node " + x + ".");
+		}
+		return rest / factor;
+	}
+}
@@ -0,0 +1,479 @@
+package equations;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.JavaFileObject.Kind;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+public class KernelCompiler {
+
+	/**
+	 * The highest number of equations solved in one generated method, which
+	 * keeps every method well below the size limit of the class file format.
+	 */
+	private static final int EQUATIONS_PER_METHOD = 64;
+
+	private KernelCompiler() {
+	}
+
+	/**
+	 * Generates the Java source of a {@link Kernel} counting the orbits of an
+	 * EquationManager. The kernel has one method per right-hand side orbit,
+	 * and one for the orbit that is counted directly, in which the loops over
+	 * the nodes of the orbit-graphlet are written out: every loop walks the
+	 * neighbours of a node already mapped, and the edges, missing edges and
+	 * symmetry-breaking conditions towards the earlier nodes are tested with
+	 * the node numbers fixed. The terms of the equations are inlined as
+	 * common-neighbour counts with their constants, each calculated in the
+	 * outermost loop in which all its nodes are known. The equations are
+	 * solved in straight-line code with the factors as constants.
+	 *
+	 * @param em
+	 *            The equations.
+	 * @param name
+	 *            The simple name of the generated class, in package equations.
+	 * @return The source of the class.
+	 */
+	public static String generate(EquationManager em, String name) {
+		return generate(new OrbitCounter(em), name);
+	}
+
+	static String generate(OrbitCounter counter, String name) {
+		EquationManager em = counter.getEquationManager();
+		Equation[] equ = em.getEqu();
+		int first = counter.getFirstOrbit();
+		StringBuilder out = new StringBuilder();
+		out.append("package equations;\n\n");
+		out.append("/**\n * Counts the orbits of order ").append(em.getOrder())
+				.append(", generated by KernelCompiler.\n */\n");
+		out.append("public final class ").append(name)
+				.append(" extends Kernel {\n\n");
+		out.append("\tprivate final long[] rhs = new long[").append(equ.length)
+				.append("];\n");
+		out.append("\tprivate final int[] nodes = new int[")
+				.append(em.getOrder()).append("];\n\n");
+		out.append("\tpublic ").append(name).append("(Graph graph) {\n");
+		out.append("\t\tsuper(graph, ").append(em.getOrder()).append(");\n");
+		out.append("\t}\n\n");
+
+		out.append("\t@Override\n");
+		out.append("\tprotected long[] evaluate(int x) {\n");
+		out.append("\t\tlong[] result = new long[").append(equ.length + 1)
+				.append("];\n");
+		out.append("\t\tlong[] rhs = this.rhs;\n");
+		out.append("\t\tjava.util.Arrays.fill(rhs, 0);\n");
+		out.append("\t\tresult[").append(equ.length)
+				.append("] = direct(x);\n");
+		Pattern[] patterns = counter.getPatterns();
+		for (int k = 0; k < patterns.length; k++) {
+			out.append("\t\tpattern").append(k).append("(x, rhs);\n");
+		}
+		for (int m = 0; m * EQUATIONS_PER_METHOD < equ.length; m++) {
+			out.append("\t\tsolve").append(m).append("(rhs, result);\n");
+		}
+		out.append("\t\treturn result;\n");
+		out.append("\t}\n\n");
+
+		search(out, counter.getDirect(), "direct");
+		for (int k = 0; k < patterns.length; k++) {
+			search(out, patterns[k], "pattern" + k);
+		}
+
+		// the equations from the highest orbit down, in methods of at most
+		// EQUATIONS_PER_METHOD equations, the first of which solves the
+		// highest ones
+		for (int m = 0; m * EQUATIONS_PER_METHOD < equ.length; m++) {
+			int high = Math.min(equ.length, equ.length - m
+					* EQUATIONS_PER_METHOD);
+			int low = Math.max(0, high - EQUATIONS_PER_METHOD);
+			out.append("\tprivate void solve").append(m)
+					.append("(long[] rhs, long[] result) {\n");
+			for (int i = high - 1; i >= low; i--) {
+				int[] orbits = equ[i].getLhsOrbits();
+				int[] factors = equ[i].getLhsCounts();
+				StringBuilder rest = new StringBuilder("rhs[" + i + "]");
+				for (int j = 1; j < orbits.length; j++) {
+					rest.append(" - ");
+					if (factors[j] != 1) {
+						rest.append(factors[j]).append(" * ");
+					}
+					rest.append("result[").append(orbits[j] - first)
+							.append("]");
+				}
+				out.append("\t\tresult[").append(i).append("] = ");
+				if (factors[0] == 1) {
+					out.append(rest);
+				} else {
+					out.append("solve(").append(rest).append(", ")
+							.append(factors[0]).append(", ").append(i)
+							.append(")");
+				}
+				out.append(";\n");
+			}
+			out.append("\t}\n\n");
+		}
+		out.setLength(out.length() - 1);
+		out.append("}\n");
+		return out.toString();
+	}
+
+	/**
+	 * Writes the method finding the occurrences of a pattern. The method of
+	 * the directly counted pattern returns the number of occurrences; the
+	 * others add the right-hand sides of their equations.
+	 */
+	private static void search(StringBuilder out, Pattern pattern,
+			String method) {
+		boolean direct = pattern.equations.length == 0;
+		// the masks of all terms, with the position at which they are known
+		int[] level = new int[1 << pattern.order];
+		Arrays.fill(level, -1);
+		int[] position = new int[pattern.order];
+		for (int p = 0; p < pattern.order; p++) {
+			position[pattern.nodes[p]] = p;
+		}
+		for (int[] terms : pattern.terms) {
+			for (int mask : terms) {
+				int l = 0;
+				for (int m = mask; m != 0; m &= m - 1) {
+					l = Math.max(l, position[Integer.numberOfTrailingZeros(m)]);
+				}
+				level[mask] = l;
+			}
+		}
+
+		out.append("\t// orbit ").append(pattern.orbit).append(":");
+		for (int p = 1; p < pattern.order; p++) {
+			for (int c = pattern.connected[p]; c != 0; c &= c - 1) {
+				out.append(" ").append(Integer.numberOfTrailingZeros(c))
+						.append("-").append(pattern.nodes[p]);
+			}
+		}
+		out.append("\n");
+		out.append("\tprivate ").append(direct ? "long " : "void ")
+				.append(method).append("(int x")
+				.append(direct ? "" : ", long[] rhs").append(") {\n");
+		if (direct) {
+			out.append("\t\tlong count = 0;\n");
+		}
+		String indent = "\t\t";
+		terms(out, pattern, level, 0, indent);
+		for (int p = 1; p < pattern.order; p++) {
+			int node = pattern.nodes[p];
+			String v = variable(node);
+			int connected = pattern.connected[p];
+			String parent;
+			if (Integer.bitCount(connected) == 1) {
+				parent = variable(Integer.numberOfTrailingZeros(connected));
+			} else {
+				// the candidates are the neighbours of the connected node of
+				// lowest degree
+				parent = "p" + node;
+				int c = connected;
+				out.append(indent).append("int ").append(parent).append(" = ")
+						.append(variable(Integer.numberOfTrailingZeros(c)))
+						.append(";\n");
+				for (c &= c - 1; c != 0; c &= c - 1) {
+					String u = variable(Integer.numberOfTrailingZeros(c));
+					out.append(indent).append("if (degree(").append(u)
+							.append(") < degree(").append(parent)
+							.append("))\n");
+					out.append(indent).append("\t").append(parent)
+							.append(" = ").append(u).append(";\n");
+				}
+			}
+			out.append(indent).append("for (int i").append(node)
+					.append(" = 0, d").append(node).append(" = degree(")
+					.append(parent).append("); i").append(node)
+					.append(" < d").append(node).append("; i").append(node)
+					.append("++) {\n");
+			indent += "\t";
+			out.append(indent).append("int ").append(v)
+					.append(" = neighbour(").append(parent).append(", i")
+					.append(node).append(");\n");
+			// cheap tests first: the ordering, x and distinct nodes, then
+			// the edges between the earlier nodes and this one
+			StringBuilder reject = new StringBuilder();
+			for (int q = 1; q < p; q++) {
+				int u = pattern.nodes[q];
+				int bit = 1 << u;
+				if ((pattern.above[p] & bit) != 0) {
+					or(reject, variable(u) + " >= " + v);
+				} else if ((pattern.below[p] & bit) != 0) {
+					or(reject, variable(u) + " <= " + v);
+				} else if ((connected & bit) == 0) {
+					or(reject, variable(u) + " == " + v);
+				}
+			}
+			if ((connected & 1) != 0) {
+				if (!parent.equals("x")) {
+					or(reject, "!adjacent(" + v + ")");
+				}
+			} else {
+				or(reject, v + " == x || adjacent(" + v + ")");
+			}
+			for (int q = 1; q < p; q++) {
+				int u = pattern.nodes[q];
+				int bit = 1 << u;
+				if ((connected & bit) != 0) {
+					if (Integer.bitCount(connected) == 1) {
+						continue;
+					}
+					or(reject, parent + " != " + variable(u) + " && !edge("
+							+ variable(u) + ", " + v + ")");
+				} else {
+					or(reject, "edge(" + variable(u) + ", " + v + ")");
+				}
+			}
+			if (reject.length() > 0) {
+				out.append(indent).append("if (").append(reject).append(")\n");
+				out.append(indent).append("\tcontinue;\n");
+			}
+			terms(out, pattern, level, p, indent);
+		}
+		lazyTerms(out, pattern, level, indent);
+		if (direct) {
+			out.append(indent).append("count++;\n");
+		}
+		for (int k = 0; k < pattern.equations.length; k++) {
+			out.append(indent).append("rhs[").append(pattern.equations[k])
+					.append("] += ");
+			for (int t = 0; t < pattern.terms[k].length; t++) {
+				if (t > 0) {
+					out.append(" + ");
+				}
+				out.append("c").append(pattern.terms[k][t]);
+			}
+			if (pattern.minus[k] != 0) {
+				out.append(" - ").append(pattern.minus[k]);
+			}
+			out.append(";\n");
+		}
+		for (int p = pattern.order - 1; p > 0; p--) {
+			indent = indent.substring(1);
+			out.append(indent).append("}\n");
+		}
+		if (direct) {
+			out.append("\t\treturn count;\n");
+		}
+		out.append("\t}\n\n");
+	}
+
+	/**
+	 * Writes the common-neighbour counts of the terms that are known at a
+	 * position. Counts that take an intersection of neighbourhoods are only
+	 * declared before the innermost loop, and calculated in it the first time
+	 * they are needed, as there may be no occurrence to use them for.
+	 */
+	private static void terms(StringBuilder out, Pattern pattern,
+			int[] level, int p, String indent) {
+		for (int mask = 1; mask < level.length; mask++) {
+			if (level[mask] != p) {
+				continue;
+			}
+			if (p < pattern.order - 1 && Integer.bitCount(mask & ~1) > 1) {
+				out.append(indent).append("long c").append(mask)
+						.append(" = -1;\n");
+			} else {
+				fill(out, mask, indent);
+				out.append(indent).append("long c").append(mask).append(" = ")
+						.append(expression(mask)).append(";\n");
+			}
+		}
+	}
+
+	/**
+	 * Writes the calculation of the counts declared before the innermost
+	 * loop, for the first occurrence that needs them.
+	 */
+	private static void lazyTerms(StringBuilder out, Pattern pattern,
+			int[] level, String indent) {
+		for (int mask = 1; mask < level.length; mask++) {
+			if (level[mask] < 0 || level[mask] == pattern.order - 1
+					|| Integer.bitCount(mask & ~1) < 2) {
+				continue;
+			}
+			out.append(indent).append("if (c").append(mask).append(" < 0) {\n");
+			fill(out, mask, indent + "\t");
+			out.append(indent).append("\tc").append(mask).append(" = ")
+					.append(expression(mask)).append(";\n");
+			out.append(indent).append("}\n");
+		}
+	}
+
+	/**
+	 * Writes the nodes of a term with more nodes than the fixed arities of
+	 * {@link Kernel} into the scratch array.
+	 */
+	private static void fill(StringBuilder out, int mask, String indent) {
+		if (Integer.bitCount(mask & ~1) <= 3) {
+			return;
+		}
+		int i = 0;
+		for (int m = mask & ~1; m != 0; m &= m - 1) {
+			out.append(indent).append("nodes[").append(i++).append("] = ")
+					.append(variable(Integer.numberOfTrailingZeros(m)))
+					.append(";\n");
+		}
+	}
+
+	/**
+	 * Returns the expression counting the common neighbours of the nodes in a
+	 * term.
+	 */
+	private static String expression(int mask) {
+		int n = Integer.bitCount(mask & ~1);
+		boolean x = (mask & 1) != 0;
+		if (n == 0) {
+			return "degree(x)";
+		}
+		if (n > 3) {
+			return (x ? "shared(" : "common(") + "nodes, " + n + ")";
+		}
+		StringBuilder nodes = new StringBuilder();
+		for (int m = mask & ~1; m != 0; m &= m - 1) {
+			if (nodes.length() > 0) {
+				nodes.append(", ");
+			}
+			nodes.append(variable(Integer.numberOfTrailingZeros(m)));
+		}
+		if (n == 1) {
+			return (x ? "shared(" : "degree(") + nodes + ")";
+		}
+		return (x ? "shared(" : "common(") + nodes + ")";
+	}
+
+	private static void or(StringBuilder condition, String test) {
+		if (condition.length() > 0) {
+			condition.append(" || ");
+		}
+		condition.append(test);
+	}
+
+	private static String variable(int node) {
+		return node == 0 ? "x" : "v" + node;
+	}
+
+	/**
+	 * Generates and compiles a kernel for an EquationManager, in memory. This
+	 * needs the compiler of a JDK.
+	 *
+	 * @param em
+	 *            The equations.
+	 * @return The class of the kernel, which has a constructor taking the
+	 *         graph.
+	 * @throws IllegalStateException
+	 *             If no compiler is available or the kernel does not compile.
+	 */
+	public static Class<? extends Kernel> compile(EquationManager em) {
+		return compile(new OrbitCounter(em));
+	}
+
+	static Class<? extends Kernel> compile(OrbitCounter counter) {
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		if (compiler == null) {
+			throw new IllegalStateException(
+					"No Java compiler is available to compile the kernel.");
+		}
+		String name = "Kernel" + counter.getEquationManager().getOrder();
+		final String source = generate(counter, name);
+		final Map<String, ByteArrayOutputStream> classes = new HashMap<String, ByteArrayOutputStream>();
+		StandardJavaFileManager files = compiler.getStandardFileManager(null,
+				null, null);
+		JavaFileManager manager = new ForwardingJavaFileManager<StandardJavaFileManager>(
+				files) {
+			@Override
+			public JavaFileObject getJavaFileForOutput(Location location,
+					String className, Kind kind, FileObject sibling) {
+				final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				classes.put(className, bytes);
+				return new SimpleJavaFileObject(URI.create("bytes:///"
+						+ className.replace('.', '/') + kind.extension), kind) {
+					@Override
+					public OutputStream openOutputStream() {
+						return bytes;
+					}
+				};
+			}
+		};
+		JavaFileObject file = new SimpleJavaFileObject(URI.create("string:///equations/"
+				+ name + Kind.SOURCE.extension), Kind.SOURCE) {
+			@Override
+			public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+				return source;
+			}
+		};
+		StringWriter errors = new StringWriter();
+		boolean compiled = compiler.getTask(errors, manager, null,
+				Arrays.asList("-classpath", System.getProperty("java.class.path")),
+				null, Arrays.asList(file)).call();
+		if (!compiled) {
+			throw new IllegalStateException("The kernel does not compile:\n"
+					+ errors);
+		}
+		ClassLoader loader = new ClassLoader(Kernel.class.getClassLoader()) {
+			@Override
+			protected Class<?> findClass(String className)
+					throws ClassNotFoundException {
+				ByteArrayOutputStream bytes = classes.get(className);
+				if (bytes == null) {
+					throw new ClassNotFoundException(className);
+				}
+				byte[] b = bytes.toByteArray();
+				return defineClass(className, b, 0, b.length);
+			}
+		};
+		try {
+			return loader.loadClass("equations." + name).asSubclass(
+					Kernel.class);
+		} catch (ClassNotFoundException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Writes the source of the kernel for the orbits of a given order, so that
+	 * it can be compiled with the rest of the project.
+	 *
+	 * @param args
+	 *            The order, followed by the name of the file to write
+	 *            (Kernel&lt;order&gt;.java by default) and the catalog of
+	 *            orbits (Orbits.txt by default).
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.out.println("Usage: KernelCompiler order [file] [catalog]");
+			return;
+		}
+		int order = Integer.parseInt(args[0]);
+		String filename = args.length > 1 ? args[1] : "Kernel" + order
+				+ ".java";
+		String catalog = args.length > 2 ? args[2] : "Orbits.txt";
+		String name = filename.substring(filename.lastIndexOf('/') + 1,
+				filename.length() - Kind.SOURCE.extension.length());
+		EquationManager em = Program.generateEquations(new OrbitCatalog(
+				catalog, order), order, 1);
+		Writer out = new FileWriter(filename);
+		try {
+			out.write(generate(em, name));
+		} finally {
+			out.close();
+		}
+	}
+}
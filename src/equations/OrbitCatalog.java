@@ -0,0 +1,223 @@
+package equations;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+public class OrbitCatalog {
+
+	private final List<OrbitRepresentative> orbits;
+	private final List<Integer> graphletsPerSize;
+	private final Map<OrbitRepresentative, Integer> orbitNumbers;
+	private final List<List<OrbitRepresentative>> orbitsPerSize;
+	private final BinaryOrbitCatalog binary;
+
+	/**
+	 * Creates an empty catalog, which does not contain any orbits.
+	 */
+	public OrbitCatalog() {
+		orbits = Collections.emptyList();
+		graphletsPerSize = Collections.emptyList();
+		orbitNumbers = Collections.emptyMap();
+		orbitsPerSize = Collections.emptyList();
+		binary = null;
+	}
+
+	/**
+	 * Reads all orbits up to the given order from file. The file may be a
+	 * text catalog, with one orbit per line given as a comma-separated list of
+	 * edges, or a binary catalog written by {@link BinaryOrbitCatalog}. A
+	 * binary catalog is mapped into memory and its orbits are only read when
+	 * they are needed.
+	 *
+	 * Only the fingerprint of every orbit is calculated while reading, which
+	 * is needed to look orbits up by number. Canonical codes, automorphisms
+	 * and sub-orbits are calculated the first time they are asked for, so
+	 * orbits that are only ever looked up never need them.
+	 *
+	 * Once read, a catalog does not change, so it can be shared by any number
+	 * of threads, and several catalogs can be used side by side.
+	 *
+	 * @param filename
+	 *            The name of the catalog.
+	 * @param maxorder
+	 *            The highest order of the orbits to be read.
+	 * @throws IOException
+	 *             If the file cannot be read.
+	 */
+	public OrbitCatalog(String filename, int maxorder) throws IOException {
+		List<OrbitRepresentative> orbits = new ArrayList<OrbitRepresentative>();
+		List<Integer> graphletsPerSize = new ArrayList<Integer>();
+		List<List<OrbitRepresentative>> orbitsPerSize = new ArrayList<List<OrbitRepresentative>>();
+		Map<OrbitRepresentative, Integer> orbitNumbers = new HashMap<OrbitRepresentative, Integer>();
+		if (BinaryOrbitCatalog.isBinaryCatalog(filename)) {
+			binary = new BinaryOrbitCatalog(filename, this);
+			graphletsPerSize.add(0);
+			for (int i = 2; i <= Math.min(maxorder, binary.getMaxOrder()); i++) {
+				graphletsPerSize.add(binary.getNOrbitsForOrder(i));
+			}
+		} else {
+			binary = null;
+			Scanner scanner = new Scanner(new File(filename));
+			try {
+				int counter = 0;
+				int size = 0;
+				int orbitNumber = 0;
+				while (scanner.hasNextLine()) {
+					OrbitRepresentative og = OrbitIdentification
+							.parseOrbit(scanner.nextLine());
+					if (og == null)
+						continue;
+					if (og.order() > size) {
+						size = og.order();
+						if (size > maxorder)
+							break;
+						graphletsPerSize.add(counter);
+						orbitsPerSize.add(new ArrayList<OrbitRepresentative>());
+						counter = 0;
+					}
+					counter++;
+					og.catalog = this;
+					og.id = orbitNumber;
+					og.fingerprint();
+					orbits.add(og);
+					orbitNumbers.put(og, orbitNumber);
+					orbitsPerSize.get(size - 2).add(og);
+					orbitNumber++;
+				}
+				graphletsPerSize.add(counter);
+			} finally {
+				scanner.close();
+			}
+		}
+		this.orbits = Collections.unmodifiableList(orbits);
+		this.graphletsPerSize = Collections.unmodifiableList(graphletsPerSize);
+		this.orbitNumbers = orbitNumbers;
+		this.orbitsPerSize = orbitsPerSize;
+	}
+
+	/**
+	 * Returns the number of a given orbit.
+	 *
+	 * @param g
+	 *            OrbitGraphlet representing the orbit.
+	 * @return The number of the orbit, or -1 if it is not in this catalog.
+	 */
+	public int identifyOrbit(OrbitRepresentative g) {
+		Statistics.identifyOrbitProbe();
+		if (binary != null)
+			return g.order() > getMaxOrder() ? -1 : binary.identifyOrbit(
+					g.order(), g.canonicalCode());
+		Integer i = orbitNumbers.get(g);
+		if (i == null)
+			return -1;
+		return i;
+	}
+
+	/**
+	 * Returns the orbit with the given number.
+	 *
+	 * @param id
+	 *            The number of the orbit.
+	 * @return The orbit with the given number.
+	 */
+	public OrbitRepresentative getOrbit(int id) {
+		return binary != null ? binary.getOrbit(id) : orbits.get(id);
+	}
+
+	/**
+	 * Returns the number of orbits of the given order
+	 *
+	 * @param order
+	 *            The order of which the number of graphlets is asked
+	 * @return The number of orbits of the given order
+	 */
+	public int getNOrbitsForOrder(int order) {
+		return graphletsPerSize.get(order - 1);
+	}
+
+	/**
+	 * Returns the total number of orbits of the given order or lower
+	 *
+	 * @param order
+	 *            The maximal order of the counted orbits
+	 * @return The number of orbits in graphlets of no higher than the given
+	 *         order
+	 */
+	public int getNOrbitsTotal(int order) {
+		int result = 0;
+		for (int i = 0; i < order; i++) {
+			result += graphletsPerSize.get(i);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the orbits of the given order.
+	 *
+	 * @param order
+	 *            The order of the orbits.
+	 * @return The orbits of the given order, ordered by number.
+	 * @throws IllegalArgumentException
+	 *             If the catalog has no orbits of the given order.
+	 */
+	public List<OrbitRepresentative> getOrbitsOfOrder(int order) {
+		if (order < 2 || order > getMaxOrder()) {
+			throw new IllegalArgumentException("The catalog has no orbits of order "
+					+ order + ", only of orders 2 to " + getMaxOrder() + ".");
+		}
+		if (binary != null)
+			return binary.getOrbitsOfOrder(order);
+		return Collections.unmodifiableList(orbitsPerSize.get(order - 2));
+	}
+
+	/**
+	 * Returns the highest order of the orbits in this catalog.
+	 *
+	 * @return The highest order of the orbits in this catalog.
+	 */
+	public int getMaxOrder() {
+		return graphletsPerSize.size();
+	}
+
+	/**
+	 * Returns the number of orbits of every order, starting at order 1.
+	 *
+	 * @return A list containing the number of orbits of every order.
+	 */
+	public List<Integer> getGraphletsPerSize() {
+		return graphletsPerSize;
+	}
+
+	/**
+	 * Counts how many orbits of the given order share their fingerprint with
+	 * other orbits. Orbits with the same fingerprint end up in the same hash
+	 * bucket and have to be told apart by their canonical code.
+	 *
+	 * @param order
+	 *            The order of the orbits to be examined.
+	 * @return A map from the number of orbits sharing a fingerprint to the
+	 *         number of fingerprints shared by that many orbits. Without
+	 *         collisions, the only key is 1.
+	 */
+	public SortedMap<Integer, Integer> getBucketOccupancy(int order) {
+		Map<Integer, Integer> buckets = new HashMap<Integer, Integer>();
+		for (OrbitRepresentative or : getOrbitsOfOrder(order)) {
+			Integer n = buckets.get(or.fingerprint());
+			buckets.put(or.fingerprint(), n == null ? 1 : n + 1);
+		}
+		SortedMap<Integer, Integer> occupancy = new TreeMap<Integer, Integer>();
+		for (int n : buckets.values()) {
+			Integer m = occupancy.get(n);
+			occupancy.put(n, m == null ? 1 : m + 1);
+		}
+		return occupancy;
+	}
+}
@@ -0,0 +1,227 @@
+package equations;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+
+public class OrbitCounter {
+
+	private final EquationManager em;
+	private final int first;
+	private final Pattern direct;
+	private final Pattern[] patterns;
+	private Constructor<? extends Kernel> compiled;
+
+	/**
+	 * Creates a counter for the orbits of the order of an EquationManager.
+	 * Only the last orbit of that order, which no equation starts with, is
+	 * counted by finding all its occurrences. Every other orbit is derived
+	 * from the equations: the occurrences of every right-hand side orbit are
+	 * found, and for each of them the common neighbours of the nodes in every
+	 * term are counted. The equations are then solved from the highest orbit
+	 * down, as every equation starts with the lowest orbit it contains.
+	 *
+	 * @param em
+	 *            The equations for the orbits to be counted.
+	 */
+	public OrbitCounter(EquationManager em) {
+		this.em = em;
+		OrbitCatalog catalog = em.getCatalog();
+		Equation[] equ = em.getEqu();
+		first = catalog.getNOrbitsTotal(em.getOrder() - 1);
+		direct = new Pattern(catalog.getOrbit(first + equ.length));
+		Map<Integer, List<Integer>> perOrbit = new LinkedHashMap<Integer, List<Integer>>();
+		for (int i = 0; i < equ.length; i++) {
+			if (equ[i] == null) {
+				throw new IllegalArgumentException("There is no equation for orbit "
+						+ (first + i) + ".");
+			}
+			List<Integer> equations = perOrbit.get(equ[i].getRhsId());
+			if (equations == null) {
+				equations = new ArrayList<Integer>();
+				perOrbit.put(equ[i].getRhsId(), equations);
+			}
+			equations.add(i);
+		}
+		patterns = new Pattern[perOrbit.size()];
+		int p = 0;
+		for (Map.Entry<Integer, List<Integer>> entry : perOrbit.entrySet()) {
+			int[] equations = new int[entry.getValue().size()];
+			Equation[] selected = new Equation[equations.length];
+			for (int i = 0; i < equations.length; i++) {
+				equations[i] = entry.getValue().get(i);
+				selected[i] = equ[equations[i]];
+			}
+			patterns[p++] = new Pattern(catalog.getOrbit(entry.getKey()),
+					equations, selected);
+		}
+	}
+
+	/**
+	 * Counts, for every node of a graph, how often it touches every orbit of
+	 * the order of the equations, using all available processors.
+	 *
+	 * @param graph
+	 *            The graph.
+	 * @return For every node, the number of graphlets in which it is in each
+	 *         orbit, starting with the lowest orbit of the order.
+	 */
+	public long[][] count(Graph graph) {
+		return count(graph, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Counts, for every node of a graph, how often it touches every orbit of
+	 * the order of the equations, spreading the nodes over several threads.
+	 *
+	 * @param graph
+	 *            The graph.
+	 * @param parallelism
+	 *            The number of threads to use.
+	 * @return For every node, the number of graphlets in which it is in each
+	 *         orbit, starting with the lowest orbit of the order.
+	 */
+	public long[][] count(Graph graph, int parallelism) {
+		long[][] counts = new long[graph.size()][];
+		ConcurrentMap<Thread, Kernel> kernels = new ConcurrentHashMap<Thread, Kernel>();
+		CountingTask task = new CountingTask(this, graph, counts, kernels,
+				parallelism);
+		if (parallelism <= 1) {
+			task.invoke();
+		} else {
+			ForkJoinPool pool = new ForkJoinPool(parallelism);
+			try {
+				pool.invoke(task);
+			} finally {
+				pool.shutdown();
+			}
+		}
+		for (Kernel kernel : kernels.values()) {
+			kernel.report();
+		}
+		return counts;
+	}
+
+	/**
+	 * Generates and compiles a kernel for the equations with
+	 * {@link KernelCompiler}, which is used by all later counts instead of
+	 * interpreting the equations.
+	 *
+	 * @throws IllegalStateException
+	 *             If no compiler is available or the kernel does not compile.
+	 */
+	public void compile() {
+		try {
+			compiled = KernelCompiler.compile(this).getConstructor(Graph.class);
+		} catch (NoSuchMethodException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Creates a kernel counting the orbits of the nodes of a graph: the
+	 * compiled one if there is one, otherwise one interpreting the equations.
+	 */
+	Kernel newKernel(Graph graph) {
+		if (compiled == null) {
+			return new InterpretedKernel(this, graph);
+		}
+		try {
+			return compiled.newInstance(graph);
+		} catch (InstantiationException e) {
+			throw new IllegalStateException(e);
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException(e);
+		} catch (InvocationTargetException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	/**
+	 *
+	 * @return The number of the lowest orbit counted.
+	 */
+	public int getFirstOrbit() {
+		return first;
+	}
+
+	EquationManager getEquationManager() {
+		return em;
+	}
+
+	Pattern getDirect() {
+		return direct;
+	}
+
+	Pattern[] getPatterns() {
+		return patterns;
+	}
+
+	/**
+	 * Counts the orbits of a given order in a graph and prints, for every
+	 * node, its counts on one line, separated by spaces.
+	 *
+	 * @param args
+	 *            The order, followed by the file containing the graph as an
+	 *            edge list or a {@link BinaryGraph}, of which the nodes are
+	 *            printed in their original order. Optionally, the catalog of orbits (Orbits.txt by
+	 *            default) and "threads=n" may be passed, and "compile" to
+	 *            count with a kernel generated for the equations.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.out.println("Usage: OrbitCounter order graph [catalog] [threads=n] [compile]");
+			return;
+		}
+		int order = Integer.parseInt(args[0]);
+		String filename = "Orbits.txt";
+		int parallelism = Runtime.getRuntime().availableProcessors();
+		boolean compile = false;
+		for (int i = 2; i < args.length; i++) {
+			if (args[i].startsWith("threads="))
+				parallelism = Integer.parseInt(args[i].substring(8));
+			else if (args[i].equalsIgnoreCase("compile"))
+				compile = true;
+			else
+				filename = args[i];
+		}
+		OrbitCatalog catalog = new OrbitCatalog(filename, order);
+		EquationManager em = Program.generateEquations(catalog, order,
+				parallelism);
+		Graph graph = Graph.read(args[1]);
+		OrbitCounter counter = new OrbitCounter(em);
+		if (compile) {
+			try {
+				counter.compile();
+			} catch (IllegalStateException e) {
+				System.err.println(e.getMessage());
+				System.err.println("Interpreting the equations instead.");
+			}
+		}
+		long[][] counts = counter.count(graph, parallelism);
+		long[][] byLabel = new long[counts.length][];
+		for (int v = 0; v < counts.length; v++) {
+			byLabel[graph.label(v)] = counts[v];
+		}
+		PrintStream out = new PrintStream(System.out, false);
+		StringBuilder line = new StringBuilder();
+		for (long[] node : byLabel) {
+			line.setLength(0);
+			for (int i = 0; i < node.length; i++) {
+				if (i > 0)
+					line.append(' ');
+				line.append(node[i]);
+			}
+			out.println(line);
+		}
+		out.flush();
+	}
+}
@@ -1,123 +1,79 @@
 package equations;
 
-import java.io.File;
 import java.io.FileNotFoundException;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.io.IOException;
 import java.util.List;
-import java.util.Map;
-import java.util.Scanner;
-import java.util.Set;
+import java.util.SortedMap;
 
 public class OrbitIdentification {
 
-	private static List<OrbitRepresentative> orbits;
-	private static List<Integer> graphletsPerSize;
-//	private static boolean ready = false;
-	private static Map<OrbitRepresentative, Integer> orbitNumbers;
-	private static List<List<OrbitRepresentative>> orbitsPerSize;
+	private static volatile OrbitCatalog catalog = new OrbitCatalog();
 
 	/**
 	 * Reads all orbits in from file and stores them by number for
 	 * quick reference.
 	 */
 	public static void readGraphlets(String filename) {
-		orbits = new ArrayList<OrbitRepresentative>();
-		graphletsPerSize = new ArrayList<Integer>();
-		orbitsPerSize = new ArrayList<List<OrbitRepresentative>> ();
-		orbitNumbers = new HashMap<OrbitRepresentative, Integer>();
-		File file = new File(filename);// this file contains the graphlets
-											// in order
-		try {
-			Scanner scanner = new Scanner(file);
-			int counter = 0;
-			int size = 0;
-			int orbitNumber = 0;
-			while (scanner.hasNextLine()) {
-				String s = scanner.nextLine();
-				Set<Edge> set = new HashSet<Edge>();
-				int max = 0;
-				for (int i = 0; i < s.length() - 2; i += 4) {
-					Edge e = new Edge(s.charAt(i) - '0', s.charAt(i + 2) - '0');
-					set.add(e);
-					if (s.charAt(i) - '0' > max) {
-						max = s.charAt(i) - '0';
-					}
-					if (s.charAt(i + 2) - '0' > max) {
-						max = s.charAt(i + 2) - '0';
-					}
-				}
-				if (max + 1 > size) {
-					size = max + 1;
-					graphletsPerSize.add(counter);
-					orbitsPerSize.add(new ArrayList<OrbitRepresentative>());
-					counter = 0;
-				}
-				counter++;
-				OrbitRepresentative og = new OrbitRepresentative(set, max + 1);
-				orbits.add(og);
-				orbitNumbers.put(og, orbitNumber);
-				orbitsPerSize.get(size-2).add(og);
-				orbitNumber++;
-			}
-			graphletsPerSize.add(counter);
-//			ready = true;
-			scanner.close();
-		} catch (FileNotFoundException e) {
-			System.out.println("Ongeldige bestandsnaam");
-		}
-		System.out.println(graphletsPerSize);
+		readGraphlets(filename, CanonicalLabeling.MAX_ORDER);
+		System.out.println(catalog.getGraphletsPerSize());
 	}
 
+	/**
+	 * Reads all orbits up to the given order from file and makes them the catalog used by all static methods of
+	 * this class. See {@link OrbitCatalog#OrbitCatalog(String, int)}.
+	 * 
+	 * @param filename
+	 *            The name of the catalog.
+	 * @param maxorder
+	 *            The highest order of the orbits to be read.
+	 */
 	public static void readGraphlets(String filename, int maxorder) {
-		orbits = new ArrayList<OrbitRepresentative>();
-		graphletsPerSize = new ArrayList<Integer>();
-		orbitsPerSize = new ArrayList<List<OrbitRepresentative>> ();
-		orbitNumbers = new HashMap<OrbitRepresentative, Integer>();
-		File file = new File(filename);// this file contains the graphlets
-											// in order
 		try {
-			Scanner scanner = new Scanner(file);
-			int counter = 0;
-			int size = 0;
-			int orbitNumber = 0;
-			while (scanner.hasNextLine()) {
-				String s = scanner.nextLine();
-				Set<Edge> set = new HashSet<Edge>();
-				int max = 0;
-				for (int i = 0; i < s.length() - 2; i += 4) {
-					Edge e = new Edge(s.charAt(i) - '0', s.charAt(i + 2) - '0');
-					set.add(e);
-					if (s.charAt(i) - '0' > max) {
-						max = s.charAt(i) - '0';
-					}
-					if (s.charAt(i + 2) - '0' > max) {
-						max = s.charAt(i + 2) - '0';
-					}
-				}
-				if (max + 1 > size) {
-					size = max + 1;
-					if(size>maxorder)break;
-					graphletsPerSize.add(counter);
-					orbitsPerSize.add(new ArrayList<OrbitRepresentative>());
-					counter = 0;
-				}
-				counter++;
-				OrbitRepresentative og = new OrbitRepresentative(set, max + 1);
-				og.calculateSymmetry();
-				orbits.add(og);
-				orbitNumbers.put(og, orbitNumber);
-				orbitsPerSize.get(size-2).add(og);
-				orbitNumber++;
-			}
-			graphletsPerSize.add(counter);
-//			ready = true;
-			scanner.close();
+			catalog = new OrbitCatalog(filename, maxorder);
 		} catch (FileNotFoundException e) {
 			System.out.println("Ongeldige bestandsnaam");
+			catalog = new OrbitCatalog();
+		} catch (IOException e) {
+			System.out.println(e.getMessage());
+			catalog = new OrbitCatalog();
+		}
+	}
+
+	/**
+	 * Returns the catalog that was read last, which is used by all static
+	 * methods of this class.
+	 * 
+	 * @return The catalog that was read last.
+	 */
+	public static OrbitCatalog getCatalog() {
+		return catalog;
+	}
+
+	/**
+	 * Reads an orbit from one line of a text catalog, e.g. "0 1,1 2,1 3". The
+	 * order of the orbit is one more than its highest node number, which may
+	 * have more than one digit.
+	 * 
+	 * @param line
+	 *            A list of edges, each given as two node numbers. Node numbers
+	 *            are separated by commas or whitespace.
+	 * @return The orbit, or null if the line contains no edges.
+	 */
+	public static OrbitRepresentative parseOrbit(String line) {
+		long adjacency = 0;
+		int max = -1;
+		String[] nodes = line.trim().split("[,\\s]+");
+		for (int i = 0; i + 1 < nodes.length; i += 2) {
+			int n1 = Integer.parseInt(nodes[i]);
+			int n2 = Integer.parseInt(nodes[i + 1]);
+			adjacency |= Edge.mask(n1, n2);
+			max = Math.max(max, Math.max(n1, n2));
 		}
+		if (max < 0)
+			return null;
+		return new OrbitRepresentative(adjacency, max + 1);
 	}
+
 	/**
 	 * Returns the number of a given orbit.
 	 * 
@@ -126,15 +82,7 @@ public class OrbitIdentification {
 	 * @return The number of the orbit.
 	 */
 	public static int identifyOrbit(OrbitRepresentative g) {
-//		if (!ready)
-//			readGraphlets();
-//		if (orbits == null) {
-//			readGraphlets();
-//		}
-		Integer i = orbitNumbers.get(g);
-		if (i == null)
-			return -1;
-		return i;
+		return catalog.identifyOrbit(g);
 	}
 
 	/**
@@ -145,9 +93,7 @@ public class OrbitIdentification {
 	 * @return The number of orbits of the given order
 	 */
 	public static int getNOrbitsForOrder(int order) {
-//		if (!ready)
-//			readGraphlets();
-		return graphletsPerSize.get(order - 1);
+		return catalog.getNOrbitsForOrder(order);
 	}
 
 	/**
@@ -159,24 +105,43 @@ public class OrbitIdentification {
 	 *         order
 	 */
 	public static int getNOrbitsTotal(int order) {
-//		if (!ready)
-//			readGraphlets();
-		int result = 0;
-		for (int i = 0; i < order; i++) {
-			result += graphletsPerSize.get(i);
-		}
-		return result;
+		return catalog.getNOrbitsTotal(order);
 	}
 	
 	public static void main(String[] args){
 		readGraphlets("Orbits.txt");
-		System.out.println(graphletsPerSize);
+		System.out.println(catalog.getGraphletsPerSize());
 		System.out.println(getNOrbitsForOrder(2));
 		System.out.println(getOrbitsOfOrder(4));
+		for (int i = 2; i <= getMaxOrder(); i++) {
+			System.out.println(i + ": " + getBucketOccupancy(i));
+		}
 	}
 	
 	public static List<OrbitRepresentative> getOrbitsOfOrder(int order){
-		return orbitsPerSize.get(order-2);
+		return catalog.getOrbitsOfOrder(order);
+	}
+
+	/**
+	 * Returns the highest order of the orbits that have been read.
+	 * 
+	 * @return The highest order of the orbits that have been read.
+	 */
+	public static int getMaxOrder() {
+		return catalog.getMaxOrder();
+	}
+
+	/**
+	 * Counts how many orbits of the given order share their fingerprint with
+	 * other orbits. See {@link OrbitCatalog#getBucketOccupancy(int)}.
+	 * 
+	 * @param order
+	 *            The order of the orbits to be examined.
+	 * @return A map from the number of orbits sharing a fingerprint to the
+	 *         number of fingerprints shared by that many orbits.
+	 */
+	public static SortedMap<Integer, Integer> getBucketOccupancy(int order) {
+		return catalog.getBucketOccupancy(order);
 	}
 
 }
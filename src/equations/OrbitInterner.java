@@ -0,0 +1,75 @@
+package equations;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Gives every orbit one shared instance while equations are generated, so
+ * that all orbit-graphlets built for the same orbit resolve its number once.
+ * The orbits of the catalog are their own shared instance, numbered when
+ * they were read. An orbit missing from the catalog gets as shared instance
+ * the first orbit-graphlet of that orbit passed to
+ * {@link #intern(OrbitRepresentative)}.
+ *
+ * Unlike the catalog, an interner grows while orbits are generated, so it is
+ * kept apart from it: every run generating equations has an interner of its
+ * own, shared by the threads of that run, while any number of runs share
+ * the catalog.
+ */
+public class OrbitInterner {
+
+	private final OrbitCatalog catalog;
+	private final ConcurrentMap<Long, OrbitRepresentative> unknown = new ConcurrentHashMap<Long, OrbitRepresentative>();
+
+	/**
+	 * Creates an interner that does not hold any orbit missing from the
+	 * catalog yet.
+	 *
+	 * @param catalog
+	 *            The catalog of which the orbits are shared.
+	 * @throws IllegalArgumentException
+	 *             If no catalog is given.
+	 */
+	public OrbitInterner(OrbitCatalog catalog) {
+		if (catalog == null) {
+			throw new IllegalArgumentException("An interner needs a catalog.");
+		}
+		this.catalog = catalog;
+	}
+
+	/**
+	 *
+	 * @return The catalog of which the orbits are shared.
+	 */
+	public OrbitCatalog getCatalog() {
+		return catalog;
+	}
+
+	/**
+	 * Returns the one shared instance of the orbit a given orbit-graphlet
+	 * represents: the orbit as it was read from the catalog, or, for an orbit
+	 * that is not in the catalog, the first orbit-graphlet of that orbit
+	 * passed to this method.
+	 *
+	 * @param g
+	 *            OrbitGraphlet representing the orbit.
+	 * @return The shared instance of the orbit.
+	 */
+	public OrbitRepresentative intern(OrbitRepresentative g) {
+		int id = catalog.identifyOrbit(g);
+		if (id >= 0)
+			return catalog.getOrbit(id);
+		Long key = ((long) g.order() << 56) | g.canonicalCode();
+		OrbitRepresentative shared = unknown.putIfAbsent(key, g);
+		return shared == null ? g : shared;
+	}
+
+	/**
+	 *
+	 * @return The number of orbits missing from the catalog that have a
+	 *         shared instance.
+	 */
+	public int getUnknown() {
+		return unknown.size();
+	}
+}
@@ -1,6 +1,7 @@
 package equations;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -9,19 +10,27 @@ import java.util.TreeSet;
 
 public class OrbitRepresentative implements Comparable<OrbitRepresentative>{
 
-	protected Set<Edge> edges;
+	protected long adjacency;
 	protected int order;
-	protected Set<Set<Edge>> permutedEdges;
-	protected List<Set<Integer>> orbits;
+	protected int[] orbits;
+	protected volatile int[] orbitSizes;
+	protected volatile AutomorphismGroup automorphisms;
+	protected AutomorphismGroup parentAutomorphisms;
+	protected int added;
+	protected volatile int[] labeling;
+	protected volatile long canonicalCode = -1;
+	protected int fingerprint;
+	protected int id = UNRESOLVED;
+	protected OrbitCatalog catalog;
+
+	private static final int UNRESOLVED = -2;
 
 	/**
 	 * Creates a new orbit-graphlet representing the orbit of the 2-graphlet.
 	 */
 	public OrbitRepresentative() {
-		edges = new HashSet<Edge>();
-		edges.add(new Edge(0, 1));
+		adjacency = Edge.mask(0, 1);
 		order = 2;
-		orbits = new ArrayList<Set<Integer>>();
 	}
 
 	/**
@@ -31,9 +40,17 @@ public class OrbitRepresentative implements Comparable<OrbitRepresentative>{
 	 *            The OrbitGraphlet to be copied.
 	 */
 	public OrbitRepresentative(OrbitRepresentative g) {
-		edges = new HashSet<Edge>(g.edges);
+		adjacency = g.adjacency;
 		order = g.order;
 		orbits = g.orbits;
+		orbitSizes = g.orbitSizes;
+		automorphisms = g.automorphisms;
+		parentAutomorphisms = g.parentAutomorphisms;
+		added = g.added;
+		labeling = g.labeling;
+		canonicalCode = g.canonicalCode;
+		id = g.id;
+		catalog = g.catalog;
 	}
 
 	/**
@@ -45,143 +62,452 @@ public class OrbitRepresentative implements Comparable<OrbitRepresentative>{
 	 *            The order of the new OrbitGraphlet.
 	 */
 	public OrbitRepresentative(Set<Edge> e, int order) {
-		edges = e;
+		for (Edge edge : e) {
+			adjacency |= Edge.mask(edge.getNodes()[0], edge.getNodes()[1]);
+		}
 		this.order = order;
 	}
 
 	/**
-	 * Generates all possible permutations of the integers ranging from 1 to
-	 * size-1. All permutations also contain the number 0 at the beginning of
-	 * the permutation, 0 being the node that cannot be permuted.
+	 * Creates a new OrbitGraphlet from an adjacency bitmask and its order.
 	 * 
-	 * @param size
-	 *            The number of elements of the permutation.
-	 * @return A list containing lists of integers representing the
-	 *         permutations.
+	 * @param adjacency
+	 *            A bitmask over the upper triangle of the adjacency matrix, as
+	 *            described in {@link Edge#index(int, int)}.
+	 * @param order
+	 *            The order of the new OrbitGraphlet.
 	 */
-	public static List<List<Integer>> generatePermutations(int size) {
-		List<List<Integer>> results = new ArrayList<List<Integer>>();
-		results.add(new ArrayList<Integer>());
-		results.get(0).add(0);
-		for (int i = 1; i < size; i++) {
-			results = generatePermutations(results);
+	public OrbitRepresentative(long adjacency, int order) {
+		assert (order <= CanonicalLabeling.MAX_ORDER);
+		this.adjacency = adjacency;
+		this.order = order;
+	}
+
+	/**
+	 * Creates a new OrbitGraphlet from an adjacency bitmask and its order,
+	 * belonging to a catalog: its number is looked up in that catalog, as are
+	 * the numbers of the orbit-graphlets generated from it.
+	 * 
+	 * @param adjacency
+	 *            A bitmask over the upper triangle of the adjacency matrix, as
+	 *            described in {@link Edge#index(int, int)}.
+	 * @param order
+	 *            The order of the new OrbitGraphlet.
+	 * @param catalog
+	 *            The catalog the new OrbitGraphlet belongs to.
+	 * @throws IllegalArgumentException
+	 *             If no catalog is given.
+	 */
+	public OrbitRepresentative(long adjacency, int order, OrbitCatalog catalog) {
+		this(adjacency, order);
+		if (catalog == null) {
+			throw new IllegalArgumentException(
+					"The orbit-graphlet needs a catalog.");
 		}
-		return results;
+		this.catalog = catalog;
 	}
 
-	
-	private static List<List<Integer>> generatePermutations(
-			List<List<Integer>> current) {
-		List<List<Integer>> permutations = new ArrayList<List<Integer>>();
-		int length = current.get(0).size();
-		for (int i = 0; i < current.size(); i++) {
-			for (int j = 0; j < length; j++) {
-				List<Integer> permutation = new ArrayList<Integer>(
-						current.get(i));
-				permutation.add(j, length);
-				permutations.add(permutation);
+	/**
+	 * Creates a new OrbitGraphlet of which the canonical code and sub-orbits
+	 * are already known, as read from a {@link BinaryOrbitCatalog}.
+	 * 
+	 * @param adjacency
+	 *            The adjacency bitmask of the new graphlet.
+	 * @param order
+	 *            The order of the new OrbitGraphlet.
+	 * @param canonicalCode
+	 *            The canonical code of the new OrbitGraphlet.
+	 * @param partition
+	 *            For every node, the lowest node in its sub-orbit.
+	 */
+	public OrbitRepresentative(long adjacency, int order, long canonicalCode,
+			int[] partition) {
+		this(adjacency, order);
+		this.canonicalCode = canonicalCode;
+		orbitSizes = new int[order];
+		for (int i = 0; i < order; i++) {
+			orbitSizes[partition[i]]++;
+		}
+		for (int i = 0; i < order; i++) {
+			orbitSizes[i] = orbitSizes[partition[i]];
+		}
+		orbits = partition;
+	}
+
+	/**
+	 * Calculates the sub-orbits of this orbit-graphlet. The automorphism
+	 * group of its canonical form is taken from the shared
+	 * {@link SymmetryCache}, so it is only searched for once for all
+	 * orbit-graphlets of the same orbit, and translated to the node names of
+	 * this orbit-graphlet. All nodes that automorphisms map onto each other
+	 * form a sub-orbit.
+	 */
+	public void calculateSymmetry() {
+		AutomorphismGroup group = SymmetryCache.getShared().get(this);
+		parentAutomorphisms = null;
+		int[] labels = labeling();
+		int[] partition = group.orbitPartition();
+		int[] lowest = new int[order];
+		Arrays.fill(lowest, -1);
+		int[] o = new int[order];
+		int[] sizes = new int[order];
+		for (int i = 0; i < order; i++) {
+			int r = partition[labels[i]];
+			if (lowest[r] < 0) {
+				lowest[r] = i;
+			}
+			o[i] = lowest[r];
+			sizes[i] = group.orbitSize(labels[i]);
+		}
+		orbits = o;
+		orbitSizes = sizes;
+	}
+
+	/**
+	 * Returns the automorphism group of the canonical form of this
+	 * orbit-graphlet. If the automorphisms of the orbit-graphlet this one was
+	 * made from by {@link #addNode(boolean[])} are known, the group is derived
+	 * from them; otherwise all permutations are searched.
+	 * 
+	 * @return The automorphisms of the canonical form, in canonical labels.
+	 */
+	AutomorphismGroup canonicalAutomorphisms() {
+		if (parentAutomorphisms == null) {
+			return canonicalForm().searchAutomorphisms();
+		}
+		AutomorphismGroup own = extendAutomorphisms();
+		int[] labels = labeling();
+		AutomorphismGroup group = new AutomorphismGroup(order);
+		int[] automorphism = new int[order];
+		for (int[] generator : own.getGenerators()) {
+			for (int i = 0; i < order; i++) {
+				automorphism[labels[i]] = labels[generator[i]];
 			}
-			List<Integer> permutation = new ArrayList<Integer>(current.get(i));
+			group.add(automorphism);
+		}
+		group.orbitPartition();
+		automorphisms = own;
+		return group;
+	}
 
-			permutation.add(length);
-			permutations.add(permutation);
+	/**
+	 * Derives the automorphism group of this orbit-graphlet from that of the
+	 * orbit-graphlet it was made from, without walking all permutations.
+	 * Every automorphism is the product of one that leaves the new node in
+	 * place and one that maps the new node onto a node of its sub-orbit. The
+	 * first kind are the automorphisms of the old orbit-graphlet that map the
+	 * nodes the new node is connected to onto each other. For the second
+	 * kind, a node can only be in the same sub-orbit as the new node if
+	 * marking either of them gives the same canonical code, and the two
+	 * canonical labelings then give an automorphism between them.
+	 */
+	private AutomorphismGroup extendAutomorphisms() {
+		AutomorphismGroup group = parentAutomorphisms.setStabilizer(added);
+		parentAutomorphisms = null;
+		int last = order - 1;
+		int[] rows = new int[order];
+		for (int i = 0; i < order; i++) {
+			rows[i] = row(i);
+		}
+		CanonicalLabeling marked = null;
+		for (int m = 1; m < last; m++) {
+			if (Integer.bitCount(rows[m]) != Integer.bitCount(rows[last])
+					|| group.orbitPartition()[m] == group.orbitPartition()[last]) {
+				continue;
+			}
+			if (marked == null) {
+				marked = new CanonicalLabeling(rows, order, last);
+			}
+			CanonicalLabeling candidate = new CanonicalLabeling(rows, order, m);
+			if (candidate.getCode() != marked.getCode()) {
+				continue;
+			}
+			int[] from = marked.getLabeling();
+			int[] to = candidate.getLabeling();
+			int[] nodes = new int[order];
+			for (int i = 0; i < order; i++) {
+				nodes[to[i]] = i;
+			}
+			int[] automorphism = new int[order];
+			for (int i = 0; i < order; i++) {
+				automorphism[i] = nodes[from[i]];
+			}
+			group.add(automorphism);
 		}
-		return permutations;
+		return group;
 	}
 
 	/**
-	 * Rewrites a set of edges so that each node number is changed to the value
-	 * corresponding to it in the given list.
+	 * Searches the automorphism group of this orbit-graphlet. Node names are
+	 * changed according to all possible permutations - which means the '0'
+	 * node is not changed. When a permutation results in the set of edges
+	 * being unchanged, it is an automorphism, and it is added to the
+	 * {@link AutomorphismGroup}.
 	 * 
-	 * @param edges
-	 *            The set of edges that must be rewritten.
-	 * @param order
-	 *            A list which defines how each number must be changed. Each
-	 *            time the int 0 appears in the set of edges, it will be changed
-	 *            into the int on position 0 in the list, and so on.
-	 * @return The rewritten set of edges.
+	 * The permutations are walked with a {@link Permutator}, which swaps two
+	 * adjacent nodes per step. The permuted adjacency matrix is kept as an
+	 * array of rows and updated by swapping the two rows and columns
+	 * involved, so no permutation or edge set is ever created.
+	 * 
+	 * @return The automorphisms of this orbit-graphlet that fix node 0.
 	 */
-	public static Set<Edge> permute(Set<Edge> edges, List<Integer> order) {
-		Set<Edge> result = new HashSet<Edge>();
-		for (Edge e : edges) {
-			result.add(new Edge(order.get(e.getNodes()[0]), order.get(e
-					.getNodes()[1])));
+	AutomorphismGroup searchAutomorphisms() {
+		int[] rows = new int[order];
+		for (int i = 0; i < order; i++) {
+			rows[i] = row(i);
 		}
-		return result;
+		int[] permuted = rows.clone();
+		int[] permutation = new int[order];
+		for (int i = 0; i < order; i++) {
+			permutation[i] = i;
+		}
+		AutomorphismGroup group = new AutomorphismGroup(order);
+		Permutator permutator = new Permutator(order - 1);
+		int swapped = 0;
+		long tried = 0;
+		while (swapped != -1) {
+			tried++;
+			if (Arrays.equals(rows, permuted)) {
+				group.add(permutation);
+			}
+			swapped = permutator.next();
+			if (swapped != -1) {
+				swap(permuted, permutation, swapped + 1, swapped + 2);
+			}
+		}
+		Statistics.permutations(tried);
+		group.orbitPartition();
+		return group;
 	}
 
 	/**
-	 * Saves all orbit-graphlets that are isomorphic to this one. Calculating
-	 * isomorphism is done by changing the node names according to all possible
-	 * permutations - which means the '0' node is not changed. All possible
-	 * permutations give rise to an isomorphic graph, but because edge sets are
-	 * saved, only those that are not exactly identical will be saved.
+	 * Exchanges two nodes in a permuted adjacency matrix: both their rows and
+	 * their columns are swapped, as are the nodes they stand for.
+	 */
+	private static void swap(int[] rows, int[] permutation, int a, int b) {
+		int row = rows[a];
+		rows[a] = rows[b];
+		rows[b] = row;
+		int node = permutation[a];
+		permutation[a] = permutation[b];
+		permutation[b] = node;
+		int mask = (1 << a) | (1 << b);
+		for (int i = 0; i < rows.length; i++) {
+			int bits = rows[i] & mask;
+			if (bits != 0 && bits != mask) {
+				rows[i] ^= mask;
+			}
+		}
+	}
+
+	/**
+	 * Returns the edges of this orbit-graphlet as a new set. Use
+	 * {@link #hasEdge(int, int)} or {@link #getAdjacency()} to inspect the
+	 * edges without creating any objects.
 	 * 
-	 * Also calculates the sub-orbits of this orbit-graphlet. When a permutation
-	 * results in the set of edges being unchanged, all changed nodes are in the
-	 * same orbit. The maximal sets of such nodes are the orbit-graphlet's
-	 * sub-orbits.
+	 * @return A set containing the edges of this orbit-graphlet.
 	 */
-	public void calculateSymmetry() {
-		permutedEdges = new HashSet<Set<Edge>>();
-		
-		List<List<Integer>> permutations = generatePermutations(order - 1);
-		for (List<Integer> l : permutations) {
-			for (int j = 0; j < l.size(); j++) {
-				l.set(j, l.get(j) + 1);
+	public Set<Edge> getEdges() {
+		Set<Edge> edges = new HashSet<Edge>();
+		long a = adjacency;
+		while (a != 0) {
+			int index = Long.numberOfTrailingZeros(a);
+			a &= a - 1;
+			edges.add(new Edge(Edge.first(index), Edge.second(index)));
+		}
+		return edges;
+	}
+
+	/**
+	 * 
+	 * @return The adjacency bitmask of this orbit-graphlet, as described in
+	 *         {@link Edge#index(int, int)}.
+	 */
+	public long getAdjacency() {
+		return adjacency;
+	}
+
+	/**
+	 * Checks whether two nodes of this orbit-graphlet are connected.
+	 * 
+	 * @param n1
+	 *            The number of the first node.
+	 * @param n2
+	 *            The number of the second node.
+	 * @return True if there is an edge between both nodes.
+	 */
+	public boolean hasEdge(int n1, int n2) {
+		return n1 != n2 && (adjacency & Edge.mask(n1, n2)) != 0;
+	}
+
+	/**
+	 * Returns the neighbours of a node as a bitmask: bit i is set if the node
+	 * is connected to node i.
+	 * 
+	 * @param node
+	 *            The node of which the neighbours are asked.
+	 * @return The adjacency row of the node.
+	 */
+	public int row(int node) {
+		int row = 0;
+		for (int i = 0; i < order; i++) {
+			if (hasEdge(node, i)) {
+				row |= 1 << i;
 			}
-			l.add(0, 0);
-		}
-		List<Set<Integer>> orbitsTemporary = new ArrayList<Set<Integer>>();
-		for (List<Integer> permutation : permutations) {
-			Set<Edge> s = permute(edges, permutation);
-			permutedEdges.add(s);
-			if (edges.equals(s)) {
-				for (int i = 0; i < permutation.size(); i++) {
-					Set<Integer> permuted = new HashSet<Integer>();
-					permuted.add(i);
-					permuted.add(permutation.get(i));
-					orbitsTemporary.add(permuted);
-				}
+		}
+		return row;
+	}
+
+	/**
+	 * Returns the canonical code of this orbit-graphlet, which is equal for
+	 * two orbit-graphlets if and only if they represent the same orbit. The
+	 * code is calculated on first use and kept until a node is added.
+	 * 
+	 * @return The canonical code of this orbit-graphlet.
+	 * @see CanonicalLabeling
+	 */
+	public long canonicalCode() {
+		long code = canonicalCode;
+		if (code < 0) {
+			labeling();
+			code = canonicalCode;
+		}
+		return code;
+	}
+
+	/**
+	 * Returns the canonical label of every node, calculating it together with
+	 * the canonical code if this has not happened yet. The code is published
+	 * before the labeling, so that a thread finding the labeling also finds
+	 * the code.
+	 */
+	private int[] labeling() {
+		int[] labels = labeling;
+		if (labels == null) {
+			int[] rows = new int[order];
+			for (int i = 0; i < order; i++) {
+				rows[i] = row(i);
 			}
+			CanonicalLabeling cl = new CanonicalLabeling(rows, order);
+			labels = cl.getLabeling();
+			canonicalCode = cl.getCode();
+			labeling = labels;
 		}
-		for (int i = 0; i < orbitsTemporary.size() - 1; i++) {
-			for (int j = i + 1; j < orbitsTemporary.size(); j++) {
-				if (orbitsTemporary.get(i).containsAll(orbitsTemporary.get(j))) {
-					orbitsTemporary.remove(j);
-					j--;
-				} else if (orbitsTemporary.get(j).containsAll(
-						orbitsTemporary.get(i))) {
-					orbitsTemporary.remove(i);
-					i--;
-					j--;
-					break;
-				} else {
-					List<Integer> undoubled = new ArrayList<Integer>();
-					for (int k : orbitsTemporary.get(j)) {
-						if (!orbitsTemporary.get(i).contains(k)) {
-							undoubled.add(k);
-						}
+		return labels;
+	}
+
+	/**
+	 * Returns this orbit-graphlet with its nodes renamed to their canonical
+	 * labels. All orbit-graphlets of the same orbit have the same canonical
+	 * form.
+	 * 
+	 * @return A new orbit-graphlet in canonical form.
+	 */
+	OrbitRepresentative canonicalForm() {
+		int[] labels = labeling();
+		long a = 0;
+		for (long e = adjacency; e != 0; e &= e - 1) {
+			int index = Long.numberOfTrailingZeros(e);
+			a |= Edge.mask(labels[Edge.first(index)], labels[Edge.second(index)]);
+		}
+		OrbitRepresentative c = new OrbitRepresentative(a, order);
+		c.canonicalCode = canonicalCode;
+		return c;
+	}
+
+	/**
+	 * Returns a hash of properties that do not change when nodes other than
+	 * the root are renamed: the degree of the root, the degree sequence, the
+	 * degrees of each node's neighbours and the number of triangles each node
+	 * is in, each node combined once more with the same properties of its
+	 * neighbours. Orbit-graphlets of the same orbit always have the same
+	 * fingerprint, and different orbits rarely do, so it is used as hash code
+	 * without having to calculate the canonical code. The fingerprint is
+	 * calculated on first use and kept until a node is added.
+	 * 
+	 * @return The fingerprint of this orbit-graphlet.
+	 */
+	public int fingerprint() {
+		if (fingerprint == 0) {
+			final int prime = 31;
+			int[] rows = new int[order];
+			for (int i = 0; i < order; i++) {
+				rows[i] = row(i);
+			}
+			int[] signatures = new int[order];
+			int[] neighbourDegrees = new int[order];
+			for (int i = 0; i < order; i++) {
+				int triangles = 0;
+				int n = 0;
+				for (int j = 0; j < order; j++) {
+					if ((rows[i] & (1 << j)) != 0) {
+						triangles += Integer.bitCount(rows[i] & rows[j]);
+						neighbourDegrees[n++] = Integer.bitCount(rows[j]);
 					}
-					if (undoubled.size() != orbitsTemporary.get(j).size()) {
-						orbitsTemporary.get(i).addAll(undoubled);
-						orbitsTemporary.remove(j);
-						i--;
-						break;
+				}
+				Arrays.sort(neighbourDegrees, 0, n);
+				int signature = Integer.bitCount(rows[i]);
+				signature = prime * signature + triangles / 2;
+				for (int j = 0; j < n; j++) {
+					signature = prime * signature + neighbourDegrees[j];
+				}
+				signatures[i] = signature;
+			}
+			int[] refined = new int[order];
+			for (int i = 0; i < order; i++) {
+				int n = 0;
+				for (int j = 0; j < order; j++) {
+					if ((rows[i] & (1 << j)) != 0) {
+						neighbourDegrees[n++] = signatures[j];
 					}
 				}
+				Arrays.sort(neighbourDegrees, 0, n);
+				refined[i] = signatures[i];
+				for (int j = 0; j < n; j++) {
+					refined[i] = prime * refined[i] + neighbourDegrees[j];
+				}
 			}
+			int result = prime * order + refined[0];
+			Arrays.sort(refined, 1, order);
+			for (int i = 1; i < order; i++) {
+				result = prime * result + refined[i];
+			}
+			fingerprint = result == 0 ? 1 : result;
 		}
-		orbits = new ArrayList<Set<Integer>>();
-		orbits.addAll(orbitsTemporary);
+		return fingerprint;
 	}
 
 	/**
+	 * Returns the number of the orbit this orbit-graphlet represents. The
+	 * number is looked up in the catalog of this orbit-graphlet the first
+	 * time it is asked for and kept until a node is added; copies and renamed
+	 * copies share it.
 	 * 
-	 * @return A set containing the edges of this orbit-graphlet.
+	 * @return The number of the orbit, or -1 if it is not in the catalog.
 	 */
-	public Set<Edge> getEdges() {
-		return edges;
+	public int id() {
+		if (id == UNRESOLVED) {
+			id = catalog().identifyOrbit(this);
+		}
+		return id;
+	}
+
+	/**
+	 * Returns the catalog this orbit-graphlet was read from, was created for,
+	 * or was made from an orbit-graphlet of.
+	 * 
+	 * @return The catalog the number of this orbit-graphlet refers to.
+	 * @throws IllegalStateException
+	 *             If this orbit-graphlet was made from scratch without a
+	 *             catalog, so that it cannot be identified.
+	 */
+	public OrbitCatalog catalog() {
+		if (catalog == null) {
+			throw new IllegalStateException("The orbit-graphlet "
+					+ Long.toHexString(adjacency) + " of order " + order
+					+ " does not belong to a catalog.");
+		}
+		return catalog;
 	}
 
 	/**
@@ -193,24 +519,79 @@ public class OrbitRepresentative implements Comparable<OrbitRepresentative>{
 	}
 
 	/**
-	 * Returns the size of the sub-orbit the given node is in.
+	 * Returns the size of the sub-orbit the given node is in. The sub-orbits
+	 * are calculated first if this has not happened yet.
 	 * 
 	 * @param node
 	 *            The node of which the orbit size must be found.
 	 * @return The size of the sub-orbit the given node is in.
 	 */
 	public int orbitSize(int node) {
-		for (Set<Integer> n : orbits) {
-			if (n.contains(node)) {
-				return n.size();
+		if (orbitSizes == null) {
+			calculateSymmetry();
+		}
+		return orbitSizes[node];
+	}
+
+	/**
+	 * Returns the sub-orbits of this orbit-graphlet as an array, giving for
+	 * every node the lowest node in the same sub-orbit.
+	 * 
+	 * @return The sub-orbit partition of this orbit-graphlet.
+	 */
+	public int[] orbitPartition() {
+		if (orbitSizes == null) {
+			calculateSymmetry();
+		}
+		return orbits.clone();
+	}
+
+	/**
+	 * Returns the automorphism group of this orbit-graphlet, translated from
+	 * the automorphism group of its canonical form the first time it is
+	 * asked for.
+	 * 
+	 * @return The automorphisms of this orbit-graphlet that fix node 0.
+	 */
+	public AutomorphismGroup getAutomorphisms() {
+		if (automorphisms == null) {
+			AutomorphismGroup canonical = SymmetryCache.getShared().get(this);
+			parentAutomorphisms = null;
+			if (automorphisms != null) {
+				return automorphisms;
+			}
+			int[] labels = labeling();
+			int[] nodes = new int[order];
+			for (int i = 0; i < order; i++) {
+				nodes[labels[i]] = i;
 			}
+			AutomorphismGroup group = new AutomorphismGroup(order);
+			int[] automorphism = new int[order];
+			for (int[] generator : canonical.getGenerators()) {
+				for (int i = 0; i < order; i++) {
+					automorphism[i] = nodes[generator[labels[i]]];
+				}
+				group.add(automorphism);
+			}
+			automorphisms = group;
 		}
-		return -1;
+		return automorphisms;
+	}
+
+	/**
+	 * Returns the number of automorphisms of this orbit-graphlet that leave
+	 * node 0 in place.
+	 *
+	 * @return The size of the automorphism group.
+	 */
+	public long automorphismGroupSize() {
+		return getAutomorphisms().size();
 	}
 
 	/**
 	 * Adds a new node to this orbit-graphlet, connected to the nodes given in
-	 * the argument.
+	 * the argument. If the automorphisms of this orbit-graphlet are known,
+	 * they are kept to derive the automorphisms of the result from.
 	 * 
 	 * @param connected
 	 *            An array containing the adjacency of the new node to the nodes
@@ -220,13 +601,23 @@ public class OrbitRepresentative implements Comparable<OrbitRepresentative>{
 	 *            is not.
 	 */
 	public void addNode(boolean[] connected) {
-		assert (connected.length == order);
+		assert (connected.length == order && order < CanonicalLabeling.MAX_ORDER);
+		added = 0;
 		for (int i = 0; i < connected.length; i++) {
 			if (connected[i]) {
-				edges.add(new Edge(i, order));
+				adjacency |= Edge.mask(i, order);
+				added |= 1 << i;
 			}
 		}
+		parentAutomorphisms = automorphisms;
 		order++;
+		orbits = null;
+		orbitSizes = null;
+		automorphisms = null;
+		labeling = null;
+		canonicalCode = -1;
+		id = UNRESOLVED;
+		fingerprint = 0;
 	}
 
 	/**
@@ -243,6 +634,8 @@ public class OrbitRepresentative implements Comparable<OrbitRepresentative>{
 	 */
 	public SortedSet<OrbitRepresentative> generateNext(List<Integer> connected) {
 		SortedSet<OrbitRepresentative> result = new TreeSet<OrbitRepresentative>();
+		// the copies derive their symmetry from this group
+		getAutomorphisms();
 		for (int i = connected.size() == 0 ? 1 : 0; i < Math.pow(2, order
 				- connected.size()); i++) {
 			boolean[] connections = new boolean[order];
@@ -260,23 +653,203 @@ public class OrbitRepresentative implements Comparable<OrbitRepresentative>{
 			OrbitRepresentative h;
 			h = new OrbitRepresentative(this);
 			h.addNode(connections);
-			h.calculateSymmetry();
 			result.add(h);
 		}
 		return result;
 	}
 
+	/**
+	 * Generates, for every list of nodes, all orbit-graphlets that can be made
+	 * from this orbit-graphlet by adding one node connected to at least those
+	 * nodes, just like {@link #generateNext(List)} does for one list.
+	 * 
+	 * Connections of the new node that an automorphism of this
+	 * orbit-graphlet maps onto each other give the same orbit-graphlet with
+	 * its nodes renamed. The connections are therefore split into classes,
+	 * only the first connections of each class are actually added, and the
+	 * orbit-graphlets for the other connections of the class are copies of
+	 * that one with the nodes renamed by the automorphism. Each
+	 * orbit-graphlet is built only once, however many lists it appears in.
+	 * 
+	 * The orbit-graphlets built are numbered through an interner of their
+	 * own; see {@link #generateAll(List, OrbitInterner)} to share one with
+	 * other calls.
+	 * 
+	 * @param connected
+	 *            The lists of nodes the new node must be connected to, none of
+	 *            them empty.
+	 * @return For every list, in the same order, a set containing all
+	 *         orbit-graphlets that can be created by adding one node with at
+	 *         least the specified connections.
+	 */
+	public List<SortedSet<OrbitRepresentative>> generateAll(
+			List<List<Integer>> connected) {
+		return generateAll(connected, new OrbitInterner(catalog()));
+	}
+
+	/**
+	 * Generates, for every list of nodes, all orbit-graphlets that can be made
+	 * from this orbit-graphlet by adding one node connected to at least those
+	 * nodes, like {@link #generateAll(List)}, numbering every orbit-graphlet
+	 * built through the given interner.
+	 * 
+	 * @param connected
+	 *            The lists of nodes the new node must be connected to, none of
+	 *            them empty.
+	 * @param interner
+	 *            The interner of the run, for the catalog of this
+	 *            orbit-graphlet.
+	 * @return For every list, in the same order, a set containing all
+	 *         orbit-graphlets that can be created by adding one node with at
+	 *         least the specified connections.
+	 */
+	public List<SortedSet<OrbitRepresentative>> generateAll(
+			List<List<Integer>> connected, OrbitInterner interner) {
+		if (interner.getCatalog() != catalog()) {
+			throw new IllegalArgumentException(
+					"The interner is for another catalog.");
+		}
+		int subsets = 1 << order;
+		int[] representatives = new int[subsets];
+		int[][] mappings = new int[subsets][];
+		List<int[]> generators = getAutomorphisms().getGenerators();
+		int[] queue = new int[subsets];
+		for (int mask = 0; mask < subsets; mask++) {
+			if (mappings[mask] != null) {
+				continue;
+			}
+			int[] identity = new int[order + 1];
+			for (int i = 0; i <= order; i++) {
+				identity[i] = i;
+			}
+			representatives[mask] = mask;
+			mappings[mask] = identity;
+			int head = 0;
+			int tail = 0;
+			queue[tail++] = mask;
+			while (head < tail) {
+				int m = queue[head++];
+				for (int[] generator : generators) {
+					int image = 0;
+					for (int i = 0; i < order; i++) {
+						if ((m & (1 << i)) != 0) {
+							image |= 1 << generator[i];
+						}
+					}
+					if (mappings[image] == null) {
+						int[] mapping = new int[order + 1];
+						for (int i = 0; i < order; i++) {
+							mapping[i] = generator[mappings[m][i]];
+						}
+						mapping[order] = order;
+						representatives[image] = mask;
+						mappings[image] = mapping;
+						queue[tail++] = image;
+					}
+				}
+			}
+		}
+		OrbitRepresentative[] children = new OrbitRepresentative[subsets];
+		List<SortedSet<OrbitRepresentative>> result = new ArrayList<SortedSet<OrbitRepresentative>>();
+		for (List<Integer> nodes : connected) {
+			SortedSet<OrbitRepresentative> next = new TreeSet<OrbitRepresentative>();
+			for (int i = 0; i < 1 << (order - nodes.size()); i++) {
+				int mask = 0;
+				int icopy = i;
+				int counter = 0;
+				for (int j = 0; j < order; j++) {
+					if (counter < nodes.size() && nodes.get(counter) <= j) {
+						mask |= 1 << j;
+						counter++;
+					} else {
+						mask |= (icopy % 2) << j;
+						icopy /= 2;
+					}
+				}
+				if (children[mask] == null) {
+					int first = representatives[mask];
+					if (children[first] == null) {
+						boolean[] connections = new boolean[order];
+						for (int j = 0; j < order; j++) {
+							connections[j] = (first & (1 << j)) != 0;
+						}
+						children[first] = new OrbitRepresentative(this);
+						children[first].addNode(connections);
+						children[first].id = interner.intern(children[first])
+								.id();
+					}
+					children[mask] = children[first].relabel(mappings[mask]);
+				}
+				next.add(children[mask]);
+			}
+			result.add(next);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns a copy of this orbit-graphlet in which every node i is renamed
+	 * to permutation[i]. Node 0 must keep its name. The copy represents the
+	 * same orbit, so its canonical code and sub-orbits are taken over instead
+	 * of being calculated again.
+	 * 
+	 * @param permutation
+	 *            The new name of every node.
+	 * @return This orbit-graphlet if the permutation does not change any
+	 *         name, otherwise a renamed copy.
+	 */
+	public OrbitRepresentative relabel(int[] permutation) {
+		boolean identity = true;
+		for (int i = 0; i < order && identity; i++) {
+			identity = permutation[i] == i;
+		}
+		if (identity) {
+			return this;
+		}
+		if (orbitSizes == null) {
+			calculateSymmetry();
+		}
+		int[] labels = labeling();
+		long a = 0;
+		for (long e = adjacency; e != 0; e &= e - 1) {
+			int index = Long.numberOfTrailingZeros(e);
+			a |= Edge.mask(permutation[Edge.first(index)],
+					permutation[Edge.second(index)]);
+		}
+		OrbitRepresentative result = new OrbitRepresentative(a, order);
+		result.labeling = new int[order];
+		result.orbitSizes = new int[order];
+		result.orbits = new int[order];
+		int[] lowest = new int[order];
+		Arrays.fill(lowest, -1);
+		int[] nodes = new int[order];
+		for (int i = 0; i < order; i++) {
+			nodes[permutation[i]] = i;
+			result.labeling[permutation[i]] = labels[i];
+			result.orbitSizes[permutation[i]] = orbitSizes[i];
+		}
+		for (int i = 0; i < order; i++) {
+			int r = orbits[nodes[i]];
+			if (lowest[r] < 0) {
+				lowest[r] = i;
+			}
+			result.orbits[i] = lowest[r];
+		}
+		result.fingerprint = fingerprint;
+		result.id = id;
+		result.catalog = catalog;
+		result.canonicalCode = canonicalCode;
+		return result;
+	}
+
 	@Override
 	public int hashCode() {
-		final int prime = 31;
-		int result = 1;
-		result = prime * result + order;
-		result = prime * result + edges.size();
-		return result;
+		return fingerprint();
 	}
 
 	@Override
 	public boolean equals(Object obj) {
+		Statistics.equalsCall();
 		if (this == obj)
 			return true;
 		if (obj == null)
@@ -286,95 +859,26 @@ public class OrbitRepresentative implements Comparable<OrbitRepresentative>{
 		OrbitRepresentative other = (OrbitRepresentative) obj;
 		if (order != other.order)
 			return false;
-		if (edges.size() != other.edges.size()) {
+		if (Long.bitCount(adjacency) != Long.bitCount(other.adjacency)
+				|| fingerprint() != other.fingerprint()) {
 			return false;
 		}
-		if (permutedEdges == null || permutedEdges.size() == 0) {
-			calculateSymmetry();
-		}
-		if (permutedEdges.contains(other.edges)) {
-			return true;
-		}
-		return false;
+		return canonicalCode() == other.canonicalCode();
 
 	}
 	
 	
 	@Override
-	public String toString(){
-		if(Program.latex){
-		int name =OrbitIdentification.identifyOrbit(this);
-		String result = ("\\[\\begin{split}P_{"+ name+"}(");
-		String list = "x";
-		for(char i=0;i<order-1;i++){
-			list+=","+(char)('a'+i);
-		}
-		result+=list +") = ";
-		result+="\\{ &\\{"+list+" \\} \\subset V(G) | \\\\";
-		String edges="";
-		String noEdges = "";
-		for(int i=0;i<order-1;i++){
-			for(int j=i+1;j<order;j++){
-				Edge e = new Edge(i,j);
-				if(this.edges.contains(e)){
-					edges+= e.toString() + ", ";
-				}else{
-					noEdges+=e+", ";
-				}
-			}
-		}
-		if(edges.length()!=0){
-			result+="&\\{"+edges.substring(0, edges.length()-2)+"\\} \\subset E(G) ";
-			if(noEdges.length()!=0){
-				result+="\\wedge \\\\";
-			}
-		}
-		if(noEdges.length()!=0){
-			result+="&\\{"+noEdges.substring(0, noEdges.length()-2)+" \\} \\cap E(G) = \\emptyset ";
-		}
-		result +="\\}\\end{split} \\]";
-		
-		return result;
-		}else{
-			int name =OrbitIdentification.identifyOrbit(this);
-			String result = ("P_"+ name+" (");
-			String list = "x";
-			for(char i=0;i<order-1;i++){
-				list+=","+(char)('a'+i);
-			}
-			result+=list +") = ";
-			result+="{{"+list+"} in V(G) | ";
-			String edges="";
-			String noEdges = "";
-			for(int i=0;i<order-1;i++){
-				for(int j=i+1;j<order;j++){
-					Edge e = new Edge(i,j);
-					if(this.edges.contains(e)){
-						edges+= e.toString() + ", ";
-					}else{
-						noEdges+=e+", ";
-					}
-				}
-			}
-			if(edges.length()!=0){
-				result+="{"+edges.substring(0, edges.length()-2)+"} in E(G)";
-				if(noEdges.length()!=0){
-					result+=" & ";
-				}
-			}
-			if(noEdges.length()!=0){
-				result+="{"+noEdges.substring(0, noEdges.length()-2)+"} not in E(G)";
-			}
-			result +="}";
-			
-			return result;
-		}
+	public String toString() {
+		return EquationWriter.toString(this,
+				Program.latex ? EquationWriter.Format.LATEX
+						: EquationWriter.Format.PLAIN);
 	}
 
 	@Override
 	public int compareTo(OrbitRepresentative o) {
-		int a = OrbitIdentification.identifyOrbit(this);
-		int b = OrbitIdentification.identifyOrbit(o);
+		int a = id();
+		int b = o.id();
 		return (a==b?0:a>b?1:-1);
 	}
 }
@@ -0,0 +1,132 @@
+package equations;
+
+import java.util.List;
+
+/**
+ * An orbit-graphlet prepared for finding its occurrences in a graph, with
+ * the equations that sum over it. Occurrences are found by mapping the nodes
+ * of the orbit-graphlet onto nodes of the graph one at a time, in an order
+ * in which every node but the first is connected to an earlier one, so that
+ * the candidates for a node are the neighbours of a node already mapped.
+ *
+ * Every occurrence is found once: of all mappings onto the same nodes, which
+ * differ by an automorphism, only the one respecting a set of conditions
+ * mapping[k] < mapping[j] is accepted. These are taken from the
+ * Schreier-Sims table of the automorphism group: every node must get a
+ * lower number than the other nodes in its basic orbit.
+ */
+class Pattern {
+
+	/**
+	 * The number of the orbit.
+	 */
+	final int orbit;
+	final int order;
+	/**
+	 * The nodes of the orbit-graphlet in the order in which they are mapped,
+	 * starting with node 0.
+	 */
+	final int[] nodes;
+	/**
+	 * For every position, the earlier nodes the node must be connected to, as
+	 * a bitmask of nodes.
+	 */
+	final int[] connected;
+	/**
+	 * For every position, the earlier nodes the node must not be connected
+	 * to, as a bitmask of nodes.
+	 */
+	final int[] disconnected;
+	/**
+	 * For every position, the earlier nodes that must be mapped onto lower
+	 * numbers, as a bitmask of nodes.
+	 */
+	final int[] above;
+	/**
+	 * For every position, the earlier nodes that must be mapped onto higher
+	 * numbers, as a bitmask of nodes.
+	 */
+	final int[] below;
+
+	/**
+	 * The positions in the EquationManager of the equations summing over this
+	 * orbit-graphlet.
+	 */
+	final int[] equations;
+	/**
+	 * For every equation, its terms as bitmasks of the nodes the added node
+	 * is connected to.
+	 */
+	final int[][] terms;
+	/**
+	 * For every equation, its total negative term, see
+	 * {@link Equation#getMinus()}.
+	 */
+	final int[] minus;
+
+	/**
+	 * Prepares an orbit-graphlet, without equations, for counting its
+	 * occurrences.
+	 */
+	Pattern(OrbitRepresentative g) {
+		this(g, new int[0], new Equation[0]);
+	}
+
+	/**
+	 * Prepares an orbit-graphlet together with the equations summing over it.
+	 *
+	 * @param g
+	 *            The orbit-graphlet in the right-hand side of the equations.
+	 * @param equations
+	 *            The positions of the equations in their EquationManager.
+	 * @param equ
+	 *            The equations at those positions.
+	 */
+	Pattern(OrbitRepresentative g, int[] equations, Equation[] equ) {
+		orbit = g.id();
+		order = g.order();
+		nodes = new int[order];
+		connected = new int[order];
+		disconnected = new int[order];
+		above = new int[order];
+		below = new int[order];
+		int placed = 1;
+		for (int p = 1; p < order; p++) {
+			// the lowest node connected to a node placed before
+			int v = 1;
+			while ((placed & (1 << v)) != 0 || (g.row(v) & placed) == 0) {
+				v++;
+			}
+			nodes[p] = v;
+			connected[p] = g.row(v) & placed;
+			disconnected[p] = ~g.row(v) & placed;
+			placed |= 1 << v;
+		}
+		AutomorphismGroup group = g.getAutomorphisms();
+		for (int p = 1; p < order; p++) {
+			int v = nodes[p];
+			for (int q = 1; q < p; q++) {
+				int u = nodes[q];
+				if ((group.basicOrbit(u) & (1 << v)) != 0) {
+					above[p] |= 1 << u;
+				}
+				if ((group.basicOrbit(v) & (1 << u)) != 0) {
+					below[p] |= 1 << u;
+				}
+			}
+		}
+		this.equations = equations;
+		terms = new int[equations.length][];
+		minus = new int[equations.length];
+		for (int i = 0; i < equations.length; i++) {
+			minus[i] = equ[i].getMinus();
+			List<List<Integer>> rhsConnected = equ[i].getRhsConnected();
+			terms[i] = new int[rhsConnected.size()];
+			for (int t = 0; t < terms[i].length; t++) {
+				for (int node : rhsConnected.get(t)) {
+					terms[i][t] |= 1 << node;
+				}
+			}
+		}
+	}
+}
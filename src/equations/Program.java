@@ -1,9 +1,16 @@
 package equations;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 public class Program {
 
+	/**
+	 * Whether toString methods give LaTeX instead of human-readable output.
+	 * Use an {@link EquationWriter} to choose the format per call.
+	 */
 	public static boolean latex = false;
 
 	/**
@@ -17,47 +24,116 @@ public class Program {
 	 *            identification and print the equations in human-readable form.
 	 * 
 	 *            If any arguments are passed, the first one must be the
-	 *            graphlets' order. Additionally, a filename may be passed,
+	 *            graphlets' order, or a range of orders such as "4-6", in
+	 *            which case the equations for all those orders are generated
+	 *            in one run and written one after the other. Additionally, a filename may be passed,
 	 *            which will be the file used for orbit identification. If LaTeX
 	 *            output is wanted for the equations, the argument "latex" may
-	 *            be passed as well.
+	 *            be passed as well; "json" and "csv" select those formats
+	 *            instead. The number of threads used to generate the
+	 *            equations can be set with "threads=n"; by default, all
+	 *            available processors are used. With "cache", generated
+	 *            equations are kept in the directory ".equations" and reused
+	 *            by later runs for the same catalog and order; "cache=dir"
+	 *            chooses another directory. With "stats", the counters
+	 *            and timers of {@link Statistics} are kept, published as an
+	 *            MBean and printed to standard error at the end.
 	 */
 	public static void main(String[] args) {
 		int size = 0;
+		int from = 0;
+		int parallelism = Runtime.getRuntime().availableProcessors();
+		EquationWriter.Format format = EquationWriter.Format.PLAIN;
 		String filename = "Orbits.txt";
+		EquationCache cache = null;
+		boolean stats = false;
 		Scanner s = new Scanner(System.in);
 		if (args.length != 0) {
 			try {
-				size = Integer.parseInt(args[0]);
-				if (args.length > 1) {
-					if (args[1].equalsIgnoreCase("latex")) {
-						latex = true;
-						if (args.length > 2)
-							filename =(args[2]);
-
-					} else
-						filename=(args[1]);
-					if (args.length > 2 && args[2].equalsIgnoreCase("latex"))
-						latex = true;
-				} 
-
+				int dash = args[0].indexOf('-', 1);
+				if (dash > 0) {
+					from = Integer.parseInt(args[0].substring(0, dash));
+					size = Integer.parseInt(args[0].substring(dash + 1));
+				} else {
+					size = Integer.parseInt(args[0]);
+				}
+				if (size < 3 || dash > 0 && (from < 3 || from > size)) {
+					System.out.println("Invalid order " + args[0]
+							+ ": give an order of at least 3, or a range such as \"4-6\" "
+							+ "from low to high.");
+					from = 0;
+					size = 0;
+				}
+				for (int i = 1; i < args.length; i++) {
+					if (args[i].equalsIgnoreCase("latex"))
+						format = EquationWriter.Format.LATEX;
+					else if (args[i].equalsIgnoreCase("json"))
+						format = EquationWriter.Format.JSON;
+					else if (args[i].equalsIgnoreCase("csv"))
+						format = EquationWriter.Format.CSV;
+					else if (args[i].startsWith("threads="))
+						parallelism = Integer.parseInt(args[i].substring(8));
+					else if (args[i].equalsIgnoreCase("cache"))
+						cache = new EquationCache(new File(".equations"));
+					else if (args[i].startsWith("cache="))
+						cache = new EquationCache(new File(args[i].substring(6)));
+					else if (args[i].equalsIgnoreCase("stats"))
+						stats = true;
+					else
+						filename = args[i];
+				}
 			} catch (NumberFormatException e) {
 				System.out.println("Invalid argument.");
 			}
 		}
-		while (size == 0) {
+		while (size < 3) {
 			System.out
 					.println("Please enter the order of graphlets for which you want the equations.");
 			try {
 				size = s.nextInt();
 			} catch (InputMismatchException e) {
-				System.out.println("Invalid entry.");
+				s.next();
 			}
+			if (size < 3)
+				System.out.println("Invalid entry.");
 		}
+		if (stats) {
+			Statistics.getShared().setEnabled(true);
+			Statistics.register();
+		}
+		long start = System.nanoTime();
 		OrbitIdentification.readGraphlets(filename,size);
+		Statistics.time(Statistics.Phase.READ, start);
 		s.close();
-		EquationManager em = generateEquations(size);
-		System.out.println(em);
+		if (from == 0)
+			from = size;
+		OrbitCatalog catalog = OrbitIdentification.getCatalog();
+		if (size > catalog.getMaxOrder()) {
+			System.out.println("The catalog " + filename + " has orbits up to order "
+					+ catalog.getMaxOrder() + ", so equations can be generated up to that order.");
+			return;
+		}
+		EquationWriter writer = new EquationWriter(System.out);
+		try {
+			List<EquationManager> ems = new ArrayList<EquationManager>();
+			start = System.nanoTime();
+			if (cache == null) {
+				ems = generateEquations(catalog, from, size, parallelism);
+			} else {
+				for (int order = from; order <= size; order++) {
+					ems.add(cache.get(filename, catalog, order, parallelism));
+				}
+			}
+			Statistics.time(Statistics.Phase.GENERATE, start);
+			start = System.nanoTime();
+			writer.write(ems, format);
+			writer.flush();
+			Statistics.time(Statistics.Phase.WRITE, start);
+		} catch (IOException e) {
+			System.out.println("Could not write the equations.");
+		}
+		if (stats)
+			Statistics.getShared().print(System.err);
 	}
 
 	/**
@@ -71,16 +147,12 @@ public class Program {
 	public static Set<OrbitRepresentative> generateOrbits(int order) {
 		if (order < 2)
 			return null;
-		Set<OrbitRepresentative> orbits = new HashSet<OrbitRepresentative>();
+		List<OrbitRepresentative> orbits = new ArrayList<OrbitRepresentative>();
 		orbits.add(new OrbitRepresentative());
 		for (int i = 2; i < order; i++) {
-			Set<OrbitRepresentative> newOrbits = new HashSet<OrbitRepresentative>();
-			for (OrbitRepresentative or : orbits) {
-				newOrbits.addAll(or.generateNext(new LinkedList<Integer>()));
-			}
-			orbits = newOrbits;
+			orbits = CatalogGenerator.extend(orbits, 1);
 		}
-		return orbits;
+		return new HashSet<OrbitRepresentative>(orbits);
 	}
 
 	/**
@@ -92,22 +164,185 @@ public class Program {
 	 * @return An EquationManager containing all equations.
 	 */
 	public static EquationManager generateEquations(int order) {
-		EquationManager result = new EquationManager(order);
+		return generateEquations(OrbitIdentification.getCatalog(), order);
+	}
+
+	/**
+	 * Generates all equations for counting graphlets of the given order, with
+	 * the orbits numbered as in the given catalog.
+	 * 
+	 * @param catalog
+	 *            The catalog of orbits.
+	 * @param order
+	 *            The order of the graphlets that can be counted with the
+	 *            resulting equations.
+	 * @return An EquationManager containing all equations.
+	 */
+	public static EquationManager generateEquations(OrbitCatalog catalog,
+			int order) {
+		EquationManager result = new EquationManager(catalog, order);
 		List<List<Integer>> commons = commons(order-1);
-		for (OrbitRepresentative g : OrbitIdentification.getOrbitsOfOrder(order - 1)) {
+		OrbitInterner interner = new OrbitInterner(catalog);
+		for (OrbitRepresentative g : catalog.getOrbitsOfOrder(order - 1)) {
 //			g.calculateSymmetry();
-			for (List<Integer> connections : commons) {
-				Set<OrbitRepresentative> og = g.generateNext(connections);
-				List<Integer> lhs = new ArrayList<Integer>();
-				List<OrbitRepresentative> lhsGraphlets = new ArrayList<OrbitRepresentative>();
-				for (OrbitRepresentative o : og) {
-					o.calculateSymmetry();
-					lhs.add(o.orbitSize(o.order() - 1));
-					lhsGraphlets.add(o);
-				}
-				result.addEquation(new Equation(lhsGraphlets, lhs, g,
-						connections));
+			for (Equation e : generateEquations(g, commons, interner)) {
+				result.addEquation(e);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Generates all equations for counting graphlets of the given order,
+	 * spreading the work over several threads. Every orbit is handled
+	 * independently; the resulting
+	 * equations are added to the EquationManager in the same order as
+	 * {@link #generateEquations(int)} does, so the result is identical.
+	 * 
+	 * @param order
+	 *            The order of the graphlets that can be counted with the
+	 *            resulting equations.
+	 * @param parallelism
+	 *            The number of threads to use.
+	 * @return An EquationManager containing all equations.
+	 */
+	public static EquationManager generateEquations(int order, int parallelism) {
+		return generateEquations(OrbitIdentification.getCatalog(), order,
+				parallelism);
+	}
+
+	/**
+	 * Generates all equations for counting graphlets of the given order, with
+	 * the orbits numbered as in the given catalog, spreading the work over
+	 * several threads. A catalog is never changed once it has been read, so
+	 * several of these calls may run at the same time, with the same or with
+	 * different catalogs.
+	 * 
+	 * @param catalog
+	 *            The catalog of orbits.
+	 * @param order
+	 *            The order of the graphlets that can be counted with the
+	 *            resulting equations.
+	 * @param parallelism
+	 *            The number of threads to use.
+	 * @return An EquationManager containing all equations.
+	 */
+	public static EquationManager generateEquations(OrbitCatalog catalog,
+			int order, int parallelism) {
+		if (parallelism <= 1)
+			return generateEquations(catalog, order);
+		EquationManager result = new EquationManager(catalog, order);
+		EquationTask task = new EquationTask(
+				catalog.getOrbitsOfOrder(order - 1),
+				commons(order - 1), new OrbitInterner(catalog), parallelism);
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			for (Equation e : pool.invoke(task)) {
+				result.addEquation(e);
+			}
+		} finally {
+			pool.shutdown();
+		}
+		return result;
+	}
+
+	/**
+	 * Generates all equations for counting graphlets of every order in a
+	 * range, one order after the other. All orders share the catalog, in
+	 * which every orbit keeps its number once it has been looked up, and the
+	 * {@link SymmetryCache}: the automorphisms found for the graphlets built
+	 * at one order are found in the cache when those graphlets are the
+	 * right-hand side orbits of the next order.
+	 * 
+	 * @param catalog
+	 *            The catalog of orbits, containing all orbits up to the
+	 *            highest order.
+	 * @param from
+	 *            The lowest order of the graphlets to be counted.
+	 * @param to
+	 *            The highest order of the graphlets to be counted.
+	 * @param parallelism
+	 *            The number of threads to use.
+	 * @return An EquationManager for every order, from low to high.
+	 */
+	public static List<EquationManager> generateEquations(
+			OrbitCatalog catalog, int from, int to, int parallelism) {
+		List<EquationManager> result = new ArrayList<EquationManager>();
+		for (int order = from; order <= to; order++) {
+			result.add(generateEquations(catalog, order, parallelism));
+		}
+		return result;
+	}
+
+	/**
+	 * Generates the equation that arises from adding a node to an orbit
+	 * representative, connected to at least the given nodes.
+	 * 
+	 * @param g
+	 *            The orbit representative in the right-hand side.
+	 * @param connections
+	 *            The nodes of g the new node is connected to.
+	 * @return The resulting equation.
+	 */
+	public static Equation generateEquation(OrbitRepresentative g,
+			List<Integer> connections) {
+		Set<OrbitRepresentative> og = g.generateNext(connections);
+		List<Integer> lhs = new ArrayList<Integer>();
+		List<OrbitRepresentative> lhsGraphlets = new ArrayList<OrbitRepresentative>();
+		for (OrbitRepresentative o : og) {
+			lhs.add(o.orbitSize(o.order() - 1));
+			lhsGraphlets.add(o);
+		}
+		return new Equation(lhsGraphlets, lhs, g, connections);
+	}
+
+	/**
+	 * Generates the equations that arise from adding a node to an orbit
+	 * representative, connected to at least each of the given lists of nodes
+	 * in turn. The result is the same as calling
+	 * {@link #generateEquation(OrbitRepresentative, List)} for every list,
+	 * but lists that an automorphism of g maps onto each other share the work
+	 * of building the new orbit representatives, see
+	 * {@link OrbitRepresentative#generateAll(List)}.
+	 * 
+	 * @param g
+	 *            The orbit representative in the right-hand side.
+	 * @param commons
+	 *            The lists of nodes of g the new node is connected to.
+	 * @return The resulting equations, one for every list.
+	 */
+	public static List<Equation> generateEquations(OrbitRepresentative g,
+			List<List<Integer>> commons) {
+		return generateEquations(g, commons, new OrbitInterner(g.catalog()));
+	}
+
+	/**
+	 * Generates the equations that arise from adding a node to an orbit
+	 * representative like
+	 * {@link #generateEquations(OrbitRepresentative, List)}, numbering the
+	 * new orbit representatives through the interner of the run.
+	 * 
+	 * @param g
+	 *            The orbit representative in the right-hand side.
+	 * @param commons
+	 *            The lists of nodes of g the new node is connected to.
+	 * @param interner
+	 *            The interner shared by all orbit representatives of the run.
+	 * @return The resulting equations, one for every list.
+	 */
+	public static List<Equation> generateEquations(OrbitRepresentative g,
+			List<List<Integer>> commons, OrbitInterner interner) {
+		List<SortedSet<OrbitRepresentative>> next = g.generateAll(commons,
+				interner);
+		List<Equation> result = new ArrayList<Equation>(commons.size());
+		for (int i = 0; i < commons.size(); i++) {
+			List<Integer> lhs = new ArrayList<Integer>();
+			List<OrbitRepresentative> lhsGraphlets = new ArrayList<OrbitRepresentative>();
+			for (OrbitRepresentative o : next.get(i)) {
+				lhs.add(o.orbitSize(o.order() - 1));
+				lhsGraphlets.add(o);
 			}
+			result.add(new Equation(lhsGraphlets, lhs, g, commons.get(i)));
 		}
 		return result;
 	}
@@ -120,7 +355,7 @@ public class Program {
 	 *            The size of the collection of elements.
 	 * @return All possible combinations.
 	 */
-	private static List<List<Integer>> commons(int size) {
+	static List<List<Integer>> commons(int size) {
 		List<List<Integer>> result = new ArrayList<List<Integer>>();
 		for (int i = 1; i < Math.pow(2, size) - 1; i++) {
 			List<Integer> common = new ArrayList<Integer>();
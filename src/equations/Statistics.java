@@ -0,0 +1,306 @@
+package equations;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+public class Statistics implements StatisticsMBean {
+
+	/**
+	 * The phases of a run of {@link Program}, of which the wall time is kept.
+	 */
+	public enum Phase {
+		READ, GENERATE, WRITE
+	}
+
+	/**
+	 * The name under which the statistics are registered as an MBean.
+	 */
+	public static final String OBJECT_NAME = "equations:type=Statistics";
+
+	private static final Statistics shared = new Statistics();
+
+	private static volatile boolean enabled;
+
+	private final AtomicLong permutations = new AtomicLong();
+	private final AtomicLong labelings = new AtomicLong();
+	private final AtomicLong equalsCalls = new AtomicLong();
+	private final AtomicLong identifyOrbitProbes = new AtomicLong();
+	private final AtomicLong equationsAdded = new AtomicLong();
+	private final AtomicLong equationsMerged = new AtomicLong();
+	private final AtomicLong equationsDropped = new AtomicLong();
+	private final AtomicLong pairCacheHits = new AtomicLong();
+	private final AtomicLong pairCacheMisses = new AtomicLong();
+	private final AtomicLongArray phaseNanos = new AtomicLongArray(
+			Phase.values().length);
+
+	private Statistics() {
+	}
+
+	/**
+	 * Returns the statistics of this JVM. Nothing is counted until counting
+	 * is enabled, so that the hot paths only pay for reading one flag; the
+	 * hits and misses of the shared {@link SymmetryCache} are always kept by
+	 * the cache itself.
+	 *
+	 * @return The one instance of this class.
+	 */
+	public static Statistics getShared() {
+		return shared;
+	}
+
+	/**
+	 * Registers the statistics with the platform MBean server under
+	 * {@link #OBJECT_NAME}. Registering them twice is not an error.
+	 */
+	public static void register() {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			if (!server.isRegistered(name)) {
+				server.registerMBean(shared, name);
+			}
+		} catch (JMException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	static void permutations(long n) {
+		if (enabled)
+			shared.permutations.addAndGet(n);
+	}
+
+	static void labeling() {
+		if (enabled)
+			shared.labelings.incrementAndGet();
+	}
+
+	static void equalsCall() {
+		if (enabled)
+			shared.equalsCalls.incrementAndGet();
+	}
+
+	static void identifyOrbitProbe() {
+		if (enabled)
+			shared.identifyOrbitProbes.incrementAndGet();
+	}
+
+	static void equationAdded() {
+		if (enabled)
+			shared.equationsAdded.incrementAndGet();
+	}
+
+	static void equationMerged() {
+		if (enabled)
+			shared.equationsMerged.incrementAndGet();
+	}
+
+	static void equationDropped() {
+		if (enabled)
+			shared.equationsDropped.incrementAndGet();
+	}
+
+	static void pairCache(long hits, long misses) {
+		if (enabled) {
+			shared.pairCacheHits.addAndGet(hits);
+			shared.pairCacheMisses.addAndGet(misses);
+		}
+	}
+
+	/**
+	 * Adds the time passed since the given moment to a phase.
+	 *
+	 * @param phase
+	 *            The phase that has just ended.
+	 * @param start
+	 *            The value of {@link System#nanoTime()} when the phase
+	 *            started.
+	 */
+	public static void time(Phase phase, long start) {
+		if (enabled)
+			shared.phaseNanos.addAndGet(phase.ordinal(), System.nanoTime()
+					- start);
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	@Override
+	public void setEnabled(boolean enabled) {
+		Statistics.enabled = enabled;
+	}
+
+	/**
+	 *
+	 * @return The number of permutations tried while searching automorphisms.
+	 */
+	@Override
+	public long getPermutations() {
+		return permutations.get();
+	}
+
+	/**
+	 *
+	 * @return The number of labelings compared while calculating canonical
+	 *         codes.
+	 */
+	@Override
+	public long getLabelings() {
+		return labelings.get();
+	}
+
+	/**
+	 *
+	 * @return The number of times two orbit-graphlets were compared for
+	 *         isomorphism.
+	 */
+	@Override
+	public long getEqualsCalls() {
+		return equalsCalls.get();
+	}
+
+	/**
+	 *
+	 * @return The number of orbit-graphlets looked up in a catalog.
+	 */
+	@Override
+	public long getIdentifyOrbitProbes() {
+		return identifyOrbitProbes.get();
+	}
+
+	@Override
+	public long getSymmetryCacheHits() {
+		return SymmetryCache.getShared().getHits();
+	}
+
+	@Override
+	public long getSymmetryCacheMisses() {
+		return SymmetryCache.getShared().getMisses();
+	}
+
+	/**
+	 *
+	 * @return The number of equations that became the equation for their
+	 *         lowest orbit.
+	 */
+	@Override
+	public long getEquationsAdded() {
+		return equationsAdded.get();
+	}
+
+	/**
+	 *
+	 * @return The number of equations merged with the equation for their
+	 *         lowest orbit.
+	 */
+	@Override
+	public long getEquationsMerged() {
+		return equationsMerged.get();
+	}
+
+	/**
+	 *
+	 * @return The number of equations that were not compatible with the
+	 *         equation for their lowest orbit.
+	 */
+	@Override
+	public long getEquationsDropped() {
+		return equationsDropped.get();
+	}
+
+	/**
+	 *
+	 * @return The number of pairs of which the common neighbours were found
+	 *         in the cache of a counting kernel.
+	 */
+	@Override
+	public long getPairCacheHits() {
+		return pairCacheHits.get();
+	}
+
+	/**
+	 *
+	 * @return The number of pairs of which the common neighbours were counted
+	 *         and stored in the cache of a counting kernel.
+	 */
+	@Override
+	public long getPairCacheMisses() {
+		return pairCacheMisses.get();
+	}
+
+	@Override
+	public long getReadMillis() {
+		return millis(Phase.READ);
+	}
+
+	@Override
+	public long getGenerateMillis() {
+		return millis(Phase.GENERATE);
+	}
+
+	@Override
+	public long getWriteMillis() {
+		return millis(Phase.WRITE);
+	}
+
+	private long millis(Phase phase) {
+		return phaseNanos.get(phase.ordinal()) / 1000000;
+	}
+
+	/**
+	 * Sets all counters and timers back to zero. The symmetry cache keeps its
+	 * own counts.
+	 */
+	@Override
+	public void reset() {
+		permutations.set(0);
+		labelings.set(0);
+		equalsCalls.set(0);
+		identifyOrbitProbes.set(0);
+		equationsAdded.set(0);
+		equationsMerged.set(0);
+		equationsDropped.set(0);
+		pairCacheHits.set(0);
+		pairCacheMisses.set(0);
+		for (int i = 0; i < phaseNanos.length(); i++) {
+			phaseNanos.set(i, 0);
+		}
+	}
+
+	/**
+	 * Prints every counter and timer on a line of its own.
+	 *
+	 * @param out
+	 *            The stream to print to.
+	 */
+	public void print(PrintStream out) {
+		String line = "%-22s %12d%n";
+		out.format(Locale.ROOT, line, "permutations", getPermutations());
+		out.format(Locale.ROOT, line, "labelings", getLabelings());
+		out.format(Locale.ROOT, line, "equals calls", getEqualsCalls());
+		out.format(Locale.ROOT, line, "identifyOrbit probes",
+				getIdentifyOrbitProbes());
+		out.format(Locale.ROOT, line, "symmetry cache hits",
+				getSymmetryCacheHits());
+		out.format(Locale.ROOT, line, "symmetry cache misses",
+				getSymmetryCacheMisses());
+		out.format(Locale.ROOT, line, "equations added", getEquationsAdded());
+		out.format(Locale.ROOT, line, "equations merged", getEquationsMerged());
+		out.format(Locale.ROOT, line, "equations dropped",
+				getEquationsDropped());
+		out.format(Locale.ROOT, line, "pair cache hits", getPairCacheHits());
+		out.format(Locale.ROOT, line, "pair cache misses",
+				getPairCacheMisses());
+		out.format(Locale.ROOT, line, "read ms", getReadMillis());
+		out.format(Locale.ROOT, line, "generate ms", getGenerateMillis());
+		out.format(Locale.ROOT, line, "write ms", getWriteMillis());
+	}
+}
@@ -0,0 +1,42 @@
+package equations;
+
+/**
+ * The management interface of {@link Statistics}, under which the counters
+ * and timers of a run can be read with JConsole or any other JMX client.
+ */
+public interface StatisticsMBean {
+
+	boolean isEnabled();
+
+	void setEnabled(boolean enabled);
+
+	long getPermutations();
+
+	long getLabelings();
+
+	long getEqualsCalls();
+
+	long getIdentifyOrbitProbes();
+
+	long getSymmetryCacheHits();
+
+	long getSymmetryCacheMisses();
+
+	long getEquationsAdded();
+
+	long getEquationsMerged();
+
+	long getEquationsDropped();
+
+	long getPairCacheHits();
+
+	long getPairCacheMisses();
+
+	long getReadMillis();
+
+	long getGenerateMillis();
+
+	long getWriteMillis();
+
+	void reset();
+}
@@ -0,0 +1,177 @@
+package equations;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class SymmetryCache {
+
+	/**
+	 * The number of graphs the shared cache holds by default: enough for all
+	 * orbits up to order 8.
+	 */
+	public static final int DEFAULT_CAPACITY = 1 << 17;
+
+	private static volatile SymmetryCache shared = new SymmetryCache(
+			DEFAULT_CAPACITY);
+
+	/**
+	 * An automorphism group in the cache, with the bit telling the clock that
+	 * it was asked for since the hand last passed it.
+	 */
+	private static class Entry {
+		final AutomorphismGroup group;
+		volatile boolean referenced;
+
+		Entry(AutomorphismGroup group) {
+			this.group = group;
+		}
+	}
+
+	private final ConcurrentMap<Long, Entry> groups = new ConcurrentHashMap<Long, Entry>();
+	private final int capacity;
+	// the keys in the cache around the clock, guarded by the clock
+	private final Object clock = new Object();
+	private long[] keys = new long[16];
+	private int used;
+	private int hand;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * Creates an empty symmetry cache. The cache keeps the automorphism group
+	 * of every graph it is asked about, keyed by the canonical code, so that
+	 * the symmetry of isomorphic graphs is only calculated once. The groups
+	 * are stored in canonical labels and translated to the labels of the
+	 * graph asking for them.
+	 *
+	 * Looking up a graph takes no lock, so that threads asking for symmetry
+	 * at the same time do not wait for each other. When the cache is full, a
+	 * graph is dropped by the clock algorithm, which comes close to dropping
+	 * the graph asked for least recently: the graphs form a circle, a graph
+	 * is marked whenever it is found, and the hand of the clock moves along
+	 * the circle, unmarking graphs, up to the first graph that was not
+	 * marked, which is replaced. Only making room for a new graph takes a
+	 * lock.
+	 *
+	 * @param capacity
+	 *            The highest number of graphs kept in the cache.
+	 */
+	public SymmetryCache(int capacity) {
+		this.capacity = Math.max(1, capacity);
+	}
+
+	/**
+	 *
+	 * @return The cache used by {@link OrbitRepresentative#calculateSymmetry()}.
+	 */
+	public static SymmetryCache getShared() {
+		return shared;
+	}
+
+	/**
+	 * Replaces the shared cache by an empty one of the given capacity.
+	 *
+	 * @param capacity
+	 *            The highest number of graphs kept in the new cache.
+	 */
+	public static void resetShared(int capacity) {
+		shared = new SymmetryCache(capacity);
+	}
+
+	/**
+	 * Returns the automorphism group of the canonical form of a graph,
+	 * calculating it if it is not in the cache. Two threads asking for the
+	 * same graph at the same time may both calculate it; only one result is
+	 * kept.
+	 *
+	 * @param g
+	 *            The graph of which the symmetry is asked.
+	 * @return The automorphism group of the canonical form of the graph, in
+	 *         canonical labels.
+	 */
+	public AutomorphismGroup get(OrbitRepresentative g) {
+		long key = key(g.order(), g.canonicalCode());
+		Entry entry = groups.get(key);
+		if (entry != null) {
+			// only written when needed, so that threads reading the same
+			// entry do not keep invalidating each other's caches
+			if (!entry.referenced) {
+				entry.referenced = true;
+			}
+			hits.incrementAndGet();
+			return entry.group;
+		}
+		misses.incrementAndGet();
+		AutomorphismGroup group = g.canonicalAutomorphisms();
+		Entry other = groups.putIfAbsent(key, new Entry(group));
+		if (other != null) {
+			return other.group;
+		}
+		// the cache may briefly hold a graph for every thread more than its
+		// capacity, until those threads have made room on the clock
+		synchronized (clock) {
+			int slot;
+			if (used < capacity) {
+				if (used == keys.length) {
+					keys = Arrays.copyOf(keys,
+							(int) Math.min(capacity, 2L * keys.length));
+				}
+				slot = used++;
+			} else {
+				Entry candidate;
+				while ((candidate = groups.get(keys[hand])).referenced) {
+					candidate.referenced = false;
+					hand = (hand + 1) % capacity;
+				}
+				groups.remove(keys[hand]);
+				slot = hand;
+				hand = (hand + 1) % capacity;
+			}
+			keys[slot] = key;
+		}
+		return group;
+	}
+
+	/**
+	 *
+	 * @return The number of graphs of which the symmetry was found in the
+	 *         cache.
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	/**
+	 *
+	 * @return The number of graphs of which the symmetry had to be calculated.
+	 */
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 *
+	 * @return The number of graphs currently in the cache.
+	 */
+	public int size() {
+		return groups.size();
+	}
+
+	@Override
+	public String toString() {
+		return "hits=" + getHits() + ", misses=" + getMisses() + ", size="
+				+ size();
+	}
+
+	/**
+	 * Canonical codes use at most 55 bits, so the order fits above them. The
+	 * bits are then mixed by multiplying with an odd number, which maps
+	 * different keys to different keys, as the codes of related graphs
+	 * differ in few bits and would otherwise share the bins of the map.
+	 */
+	private static long key(int order, long code) {
+		return (((long) order << 56) | code) * 0x9E3779B97F4A7C15L;
+	}
+}
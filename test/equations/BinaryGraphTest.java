@@ -0,0 +1,123 @@
+package equations;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class BinaryGraphTest {
+
+	@Test
+	public void writeAndMap() throws IOException {
+		Graph graph = random(500, 0.02, 1);
+		File file = temporary(".csr");
+		BinaryGraph.write(graph, file.getPath());
+		assertTrue(BinaryGraph.isBinaryGraph(file.getPath()));
+		Graph mapped = Graph.read(file.getPath());
+		assertEquals(graph.size(), mapped.size());
+		assertEquals(graph.edges(), mapped.edges());
+		boolean[] seen = new boolean[graph.size()];
+		for (int v = 0; v < mapped.size(); v++) {
+			int original = mapped.label(v);
+			assertFalse("label " + original + " is used twice", seen[original]);
+			seen[original] = true;
+			assertEquals(graph.degree(original), mapped.degree(v));
+			if (v > 0) {
+				assertTrue("nodes are not ordered by degree",
+						mapped.degree(v - 1) >= mapped.degree(v));
+			}
+			for (int i = 0; i < mapped.degree(v); i++) {
+				int w = mapped.neighbour(v, i);
+				if (i > 0) {
+					assertTrue("neighbours are not sorted",
+							mapped.neighbour(v, i - 1) < w);
+				}
+				assertTrue(graph.hasEdge(original, mapped.label(w)));
+				assertTrue(mapped.hasEdge(w, v));
+			}
+		}
+	}
+
+	@Test
+	public void parseLikeRead() throws IOException {
+		File file = temporary(".txt");
+		Writer out = new FileWriter(file);
+		try {
+			out.write("# a comment\n% another one\n\n0 1\r\n1\t2 weight\n");
+			out.write("  2 3\n3 3\n1 0\n");
+			Random random = new Random(2);
+			for (int i = 0; i < 2000; i++) {
+				out.write(random.nextInt(300) + " " + random.nextInt(300) + "\n");
+			}
+			out.write("299 17");
+		} finally {
+			out.close();
+		}
+		Graph read = Graph.read(file.getPath());
+		for (int parallelism = 1; parallelism <= 4; parallelism *= 4) {
+			Graph parsed = BinaryGraph.parse(file.getPath(), parallelism);
+			assertEquals(read.size(), parsed.size());
+			assertEquals(read.edges(), parsed.edges());
+			for (int v = 0; v < read.size(); v++) {
+				assertEquals(read.degree(v), parsed.degree(v));
+				for (int i = 0; i < read.degree(v); i++) {
+					assertEquals(read.neighbour(v, i), parsed.neighbour(v, i));
+				}
+			}
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void parseRejectsText() throws IOException {
+		File file = temporary(".txt");
+		Writer out = new FileWriter(file);
+		try {
+			out.write("0 1\n1 two\n");
+		} finally {
+			out.close();
+		}
+		BinaryGraph.parse(file.getPath(), 1);
+	}
+
+	@Test(expected = IOException.class)
+	public void mapRejectsTruncatedFile() throws IOException {
+		File file = temporary(".csr");
+		BinaryGraph.write(random(50, 0.1, 3), file.getPath());
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.setLength(raf.length() - 4);
+		} finally {
+			raf.close();
+		}
+		BinaryGraph.map(file.getPath());
+	}
+
+	private static Graph random(int n, double p, long seed) {
+		Random random = new Random(seed);
+		int[] edges = new int[2 * n * n];
+		int length = 0;
+		for (int u = 0; u < n; u++) {
+			for (int v = u + 1; v < n; v++) {
+				if (random.nextDouble() < p) {
+					edges[length++] = u;
+					edges[length++] = v;
+				}
+			}
+		}
+		return new Graph(n, edges, length);
+	}
+
+	private static File temporary(String suffix) throws IOException {
+		File file = File.createTempFile("graph", suffix);
+		file.deleteOnExit();
+		return file;
+	}
+}
@@ -0,0 +1,103 @@
+package equations;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringWriter;
+import java.util.List;
+
+import org.junit.Test;
+
+public class BinaryOrbitCatalogTest {
+
+	private static final int ORDER = 6;
+
+	@Test
+	public void writeAndRead() throws IOException {
+		OrbitCatalog text = new OrbitCatalog("Orbits.txt", ORDER);
+		File file = temporary();
+		BinaryOrbitCatalog.write(text, file.getPath());
+		assertTrue(BinaryOrbitCatalog.isBinaryCatalog(file.getPath()));
+		OrbitCatalog binary = new OrbitCatalog(file.getPath(), ORDER);
+		assertEquals(text.getGraphletsPerSize(), binary.getGraphletsPerSize());
+		for (int order = 2; order <= ORDER; order++) {
+			List<OrbitRepresentative> expected = text.getOrbitsOfOrder(order);
+			List<OrbitRepresentative> actual = binary.getOrbitsOfOrder(order);
+			assertEquals(expected.size(), actual.size());
+			for (int i = 0; i < expected.size(); i++) {
+				OrbitRepresentative g = expected.get(i);
+				OrbitRepresentative h = actual.get(i);
+				assertEquals(g.id(), h.id());
+				assertEquals(g.order(), h.order());
+				assertEquals(g.getAdjacency(), h.getAdjacency());
+				assertEquals(g.canonicalCode(), h.canonicalCode());
+				assertArrayEquals(g.orbitPartition(), h.orbitPartition());
+				assertEquals(g.id(), binary.getOrbit(g.id()).id());
+				assertEquals(g.id(), binary.identifyOrbit(new OrbitRepresentative(
+						g.getAdjacency(), order)));
+			}
+		}
+	}
+
+	@Test
+	public void sameEquations() throws IOException {
+		File file = temporary();
+		BinaryOrbitCatalog.write(new OrbitCatalog("Orbits.txt", ORDER),
+				file.getPath());
+		for (int order = 3; order <= 5; order++) {
+			assertEquals(equations(new OrbitCatalog("Orbits.txt", ORDER), order),
+					equations(new OrbitCatalog(file.getPath(), ORDER), order));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsHigherOrder() throws IOException {
+		File file = temporary();
+		BinaryOrbitCatalog.write(new OrbitCatalog("Orbits.txt", 4),
+				file.getPath());
+		new BinaryOrbitCatalog(file.getPath()).getOrbitsOfOrder(5);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsUnknownNumber() throws IOException {
+		File file = temporary();
+		BinaryOrbitCatalog.write(new OrbitCatalog("Orbits.txt", 4),
+				file.getPath());
+		BinaryOrbitCatalog binary = new BinaryOrbitCatalog(file.getPath());
+		binary.getOrbit(binary.size());
+	}
+
+	@Test(expected = IOException.class)
+	public void rejectsTruncatedFile() throws IOException {
+		File file = temporary();
+		BinaryOrbitCatalog.write(new OrbitCatalog("Orbits.txt", 4),
+				file.getPath());
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.setLength(raf.length() - 1);
+		} finally {
+			raf.close();
+		}
+		new BinaryOrbitCatalog(file.getPath());
+	}
+
+	private static String equations(OrbitCatalog catalog, int order)
+			throws IOException {
+		StringWriter out = new StringWriter();
+		EquationWriter writer = new EquationWriter(out);
+		writer.write(Program.generateEquations(catalog, order, 1),
+				EquationWriter.Format.PLAIN);
+		writer.flush();
+		return out.toString();
+	}
+
+	private static File temporary() throws IOException {
+		File file = File.createTempFile("catalog", ".bin");
+		file.deleteOnExit();
+		return file;
+	}
+}
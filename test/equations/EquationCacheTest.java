@@ -0,0 +1,124 @@
+package equations;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringWriter;
+import java.nio.file.Files;
+
+import org.junit.Test;
+
+public class EquationCacheTest {
+
+	/**
+	 * Any time well in the past, to tell whether an entry was written again.
+	 */
+	private static final long WRITTEN = 1000000000000L;
+
+	@Test
+	public void storeAndLoad() throws IOException {
+		File directory = temporary();
+		OrbitCatalog catalog = new OrbitCatalog("Orbits.txt", 5);
+		for (int order = 3; order <= 5; order++) {
+			String expected = equations(Program.generateEquations(catalog,
+					order, 1));
+			assertEquals(expected, equations(new EquationCache(directory).get(
+					"Orbits.txt", catalog, order, 1)));
+			File entry = only(directory, order);
+			assertTrue(entry.setLastModified(WRITTEN));
+			assertEquals(expected, equations(new EquationCache(directory).get(
+					"Orbits.txt", catalog, order, 1)));
+			assertEquals("a valid entry was written again", WRITTEN,
+					entry.lastModified());
+		}
+	}
+
+	@Test
+	public void rebuildDamagedEntry() throws IOException {
+		File directory = temporary();
+		OrbitCatalog catalog = new OrbitCatalog("Orbits.txt", 5);
+		String expected = equations(new EquationCache(directory).get(
+				"Orbits.txt", catalog, 5, 1));
+		File entry = only(directory, 5);
+		byte[] stored = Files.readAllBytes(entry.toPath());
+		RandomAccessFile raf = new RandomAccessFile(entry, "rw");
+		try {
+			// a byte in the middle of the equations
+			raf.seek(raf.length() / 2);
+			int b = raf.read();
+			raf.seek(raf.length() / 2);
+			raf.write(b ^ 0x10);
+		} finally {
+			raf.close();
+		}
+		assertTrue(entry.setLastModified(WRITTEN));
+		assertEquals(expected, equations(new EquationCache(directory).get(
+				"Orbits.txt", catalog, 5, 1)));
+		assertTrue("a damaged entry was kept", entry.lastModified() != WRITTEN);
+		assertArrayEquals(stored, Files.readAllBytes(entry.toPath()));
+	}
+
+	@Test
+	public void rebuildEntryWithTrailingBytes() throws IOException {
+		File directory = temporary();
+		OrbitCatalog catalog = new OrbitCatalog("Orbits.txt", 4);
+		new EquationCache(directory).get("Orbits.txt", catalog, 4, 1);
+		File entry = only(directory, 4);
+		byte[] stored = Files.readAllBytes(entry.toPath());
+		RandomAccessFile raf = new RandomAccessFile(entry, "rw");
+		try {
+			raf.seek(raf.length());
+			raf.write(0);
+		} finally {
+			raf.close();
+		}
+		new EquationCache(directory).get("Orbits.txt", catalog, 4, 1);
+		assertArrayEquals(stored, Files.readAllBytes(entry.toPath()));
+	}
+
+	/**
+	 * Returns the entry of the given order, checking that it is the only file
+	 * of its order in the directory.
+	 */
+	private static File only(File directory, int order) {
+		File found = null;
+		for (File file : directory.listFiles()) {
+			if (file.getName().endsWith("-" + order + ".eqc")) {
+				assertNull(file.getName(), found);
+				found = file;
+			}
+		}
+		assertTrue("no entry for order " + order, found != null);
+		return found;
+	}
+
+	private static String equations(EquationManager em) throws IOException {
+		StringWriter out = new StringWriter();
+		EquationWriter writer = new EquationWriter(out);
+		writer.write(em, EquationWriter.Format.PLAIN);
+		writer.flush();
+		return out.toString();
+	}
+
+	/**
+	 * A new directory that is removed with its entries when the test ends.
+	 */
+	private static File temporary() throws IOException {
+		final File directory = Files.createTempDirectory("equations").toFile();
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			@Override
+			public void run() {
+				for (File file : directory.listFiles()) {
+					file.delete();
+				}
+				directory.delete();
+			}
+		});
+		return directory;
+	}
+}
@@ -0,0 +1,167 @@
+package equations;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class OrbitCounterTest {
+
+	@Test
+	public void interpretedCountsSmallGraph() throws IOException {
+		check(random(25, 0.3, 1), 5, false, 1);
+	}
+
+	@Test
+	public void compiledCountsSmallGraph() throws IOException {
+		check(random(25, 0.3, 2), 5, true, 1);
+	}
+
+	@Test
+	public void interpretedCountsHubs() throws IOException {
+		check(hubs(70, 3, 0.05, 3), 4, false, 1);
+	}
+
+	@Test
+	public void compiledCountsHubs() throws IOException {
+		check(hubs(70, 3, 0.05, 4), 4, true, 1);
+	}
+
+	@Test
+	public void countsOnSeveralThreads() throws IOException {
+		check(hubs(200, 4, 0.02, 5), 3, false, 4);
+		check(hubs(200, 4, 0.02, 6), 3, true, 4);
+	}
+
+	/**
+	 * Counts the orbits of every node of a graph with the equations of the
+	 * given order and compares them with the orbits found by identifying the
+	 * graphlet induced by every connected set of nodes.
+	 */
+	private static void check(Graph graph, int order, boolean compile,
+			int parallelism) throws IOException {
+		OrbitCatalog catalog = new OrbitCatalog("Orbits.txt", order);
+		OrbitCounter counter = new OrbitCounter(Program.generateEquations(
+				catalog, order, 1));
+		if (compile) {
+			counter.compile();
+		}
+		long[][] counts = counter.count(graph, parallelism);
+		long[][] expected = new long[graph.size()][catalog
+				.getNOrbitsForOrder(order)];
+		enumerate(graph, catalog, counter.getFirstOrbit(), new int[order], 0,
+				0, expected, new HashMap<Long, Integer>());
+		long total = 0;
+		for (int v = 0; v < graph.size(); v++) {
+			assertArrayEquals("orbits of node " + v, expected[v], counts[v]);
+			for (long count : expected[v]) {
+				total += count;
+			}
+		}
+		assertTrue("no graphlets found", total > 0);
+	}
+
+	private static void enumerate(Graph graph, OrbitCatalog catalog,
+			int first, int[] nodes, int depth, int from, long[][] expected,
+			Map<Long, Integer> ids) {
+		int k = nodes.length;
+		if (depth < k) {
+			for (int v = from; v < graph.size(); v++) {
+				nodes[depth] = v;
+				enumerate(graph, catalog, first, nodes, depth + 1, v + 1,
+						expected, ids);
+			}
+			return;
+		}
+		int reached = 1;
+		for (boolean grown = true; grown;) {
+			grown = false;
+			for (int i = 0; i < k; i++) {
+				for (int j = 0; j < k; j++) {
+					if ((reached >> i & 1) != 0 && (reached >> j & 1) == 0
+							&& graph.hasEdge(nodes[i], nodes[j])) {
+						reached |= 1 << j;
+						grown = true;
+					}
+				}
+			}
+		}
+		if (reached != (1 << k) - 1) {
+			return;
+		}
+		int[] rooted = new int[k];
+		for (int x = 0; x < k; x++) {
+			rooted[0] = nodes[x];
+			for (int i = 0, j = 1; i < k; i++) {
+				if (i != x) {
+					rooted[j++] = nodes[i];
+				}
+			}
+			long adjacency = 0;
+			for (int i = 0; i < k; i++) {
+				for (int j = i + 1; j < k; j++) {
+					if (graph.hasEdge(rooted[i], rooted[j])) {
+						adjacency |= Edge.mask(i, j);
+					}
+				}
+			}
+			Integer id = ids.get(adjacency);
+			if (id == null) {
+				id = catalog.identifyOrbit(new OrbitRepresentative(adjacency,
+						k));
+				ids.put(adjacency, id);
+			}
+			expected[nodes[x]][id - first]++;
+		}
+	}
+
+	/**
+	 * A random graph in which every edge is listed twice now and then.
+	 */
+	private static Graph random(int n, double p, long seed) {
+		Random random = new Random(seed);
+		int[] edges = new int[2 * n * n];
+		int length = 0;
+		for (int u = 0; u < n; u++) {
+			for (int v = u + 1; v < n; v++) {
+				if (random.nextDouble() < p) {
+					edges[length++] = u;
+					edges[length++] = v;
+					if (random.nextInt(10) == 0) {
+						edges[length++] = v;
+						edges[length++] = u;
+					}
+				}
+			}
+		}
+		return new Graph(n, edges, length);
+	}
+
+	/**
+	 * A sparse random graph in which some nodes, spread over the graph, are
+	 * connected to nearly all others, so that they get rows of bits in the
+	 * index of common neighbours.
+	 */
+	private static Graph hubs(int n, int hubs, double p, long seed) {
+		Random random = new Random(seed);
+		int[] edges = new int[2 * n * n];
+		int length = 0;
+		for (int u = 0; u < n; u++) {
+			for (int v = u + 1; v < n; v++) {
+				boolean hub = u % (n / hubs) == 1 || v % (n / hubs) == 1;
+				if (hub ? random.nextInt(20) != 0 : random.nextDouble() < p) {
+					edges[length++] = u;
+					edges[length++] = v;
+				}
+			}
+		}
+		Graph graph = new Graph(n, edges, length);
+		assertTrue("the graph has no hubs", graph.index().getHubs() >= 2);
+		return graph;
+	}
+}
@@ -0,0 +1,67 @@
+package equations;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+public class OrbitInternerTest {
+
+	@Test
+	public void catalogOrbitsAreShared() throws IOException {
+		OrbitCatalog catalog = new OrbitCatalog("Orbits.txt", 5);
+		OrbitInterner interner = new OrbitInterner(catalog);
+		for (OrbitRepresentative g : catalog.getOrbitsOfOrder(5)) {
+			OrbitRepresentative h = new OrbitRepresentative(
+					permute(g.getAdjacency(), 5), 5, catalog);
+			assertSame(g, interner.intern(h));
+		}
+		assertEquals(0, interner.getUnknown());
+	}
+
+	/**
+	 * Orbits missing from the catalog are shared by the interner that saw
+	 * them, while the catalog itself does not change.
+	 */
+	@Test
+	public void unknownOrbitsStayInTheInterner() throws IOException {
+		OrbitCatalog catalog = new OrbitCatalog("Orbits.txt", 5);
+		OrbitInterner interner = new OrbitInterner(catalog);
+		int unknown = 0;
+		for (OrbitRepresentative g : new OrbitCatalog("Orbits.txt", 6)
+				.getOrbitsOfOrder(6)) {
+			OrbitRepresentative first = new OrbitRepresentative(
+					g.getAdjacency(), 6, catalog);
+			OrbitRepresentative second = new OrbitRepresentative(permute(
+					g.getAdjacency(), 6), 6, catalog);
+			assertSame(first, interner.intern(first));
+			assertSame(first, interner.intern(second));
+			assertEquals(-1, second.id());
+			assertEquals(++unknown, interner.getUnknown());
+			assertNotSame(first, new OrbitInterner(catalog).intern(second));
+		}
+		assertEquals(5, catalog.getMaxOrder());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void needsCatalog() {
+		new OrbitInterner(null);
+	}
+
+	/**
+	 * Renames the nodes other than the root in reverse order.
+	 */
+	private static long permute(long adjacency, int order) {
+		long result = 0;
+		for (long e = adjacency; e != 0; e &= e - 1) {
+			int index = Long.numberOfTrailingZeros(e);
+			int a = Edge.first(index);
+			int b = Edge.second(index);
+			result |= Edge.mask(a == 0 ? 0 : order - a, b == 0 ? 0 : order - b);
+		}
+		return result;
+	}
+}
@@ -0,0 +1,111 @@
+package equations;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class OrbitRepresentativeTest {
+
+	private static final int ORDER = 6;
+	private static final int THREADS = 8;
+	private static final int ROUNDS = 200;
+
+	/**
+	 * Several threads ask the orbits of a catalog that was just read for their
+	 * canonical code and their canonical form at the same time. Every thread
+	 * must see the same code, never -1, whichever of both it asks for first
+	 * and however its calculation interleaves with the others.
+	 */
+	@Test
+	public void canonicalCodeIsPublishedWithLabeling() throws Exception {
+		List<OrbitRepresentative> reference = new OrbitCatalog("Orbits.txt",
+				ORDER).getOrbitsOfOrder(ORDER);
+		final long[] codes = new long[reference.size()];
+		final long[] forms = new long[reference.size()];
+		for (int i = 0; i < codes.length; i++) {
+			codes[i] = reference.get(i).canonicalCode();
+			forms[i] = reference.get(i).canonicalForm().getAdjacency();
+		}
+		for (int round = 0; round < ROUNDS; round++) {
+			final List<OrbitRepresentative> orbits = fresh();
+			final CyclicBarrier start = new CyclicBarrier(THREADS);
+			final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+			Thread[] threads = new Thread[THREADS];
+			for (int t = 0; t < THREADS; t++) {
+				final boolean formFirst = t % 2 == 1;
+				threads[t] = new Thread() {
+					@Override
+					public void run() {
+						try {
+							start.await();
+							// all threads walk the orbits in the same order,
+							// so that they calculate the same labeling at
+							// the same time
+							for (int i = 0; i < codes.length; i++) {
+								OrbitRepresentative g = orbits.get(i);
+								OrbitRepresentative c;
+								long code;
+								if (formFirst) {
+									c = g.canonicalForm();
+									code = g.canonicalCode();
+								} else {
+									code = g.canonicalCode();
+									c = g.canonicalForm();
+								}
+								assertEquals("code of orbit " + i, codes[i], code);
+								assertEquals("code of the canonical form of orbit "
+										+ i, codes[i], c.canonicalCode);
+								assertEquals("canonical form of orbit " + i,
+										forms[i], c.getAdjacency());
+							}
+						} catch (Throwable e) {
+							failure.compareAndSet(null, e);
+						}
+					}
+				};
+				threads[t].start();
+			}
+			for (Thread thread : threads) {
+				thread.join();
+			}
+			assertNull(String.valueOf(failure.get()), failure.get());
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void noNumberWithoutCatalog() {
+		new OrbitRepresentative(Edge.mask(0, 1) | Edge.mask(1, 2), 3).id();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void needsCatalog() {
+		new OrbitRepresentative(Edge.mask(0, 1), 2, null);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void internerOfSameCatalog() throws IOException {
+		OrbitRepresentative g = new OrbitCatalog("Orbits.txt", 4)
+				.getOrbitsOfOrder(3).get(0);
+		g.generateAll(Arrays.asList(Arrays.asList(0)), new OrbitInterner(
+				new OrbitCatalog("Orbits.txt", 4)));
+	}
+
+	/**
+	 * A catalog read anew, of which no orbit has a canonical code yet.
+	 */
+	private static List<OrbitRepresentative> fresh() throws IOException {
+		List<OrbitRepresentative> orbits = new OrbitCatalog("Orbits.txt",
+				ORDER).getOrbitsOfOrder(ORDER);
+		for (OrbitRepresentative g : orbits) {
+			assertEquals(-1, g.canonicalCode);
+		}
+		return orbits;
+	}
+}
@@ -0,0 +1,54 @@
+package equations;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Test;
+
+public class SymmetryCacheTest {
+
+	@Test
+	public void sameGroupsWhenFull() throws IOException {
+		List<OrbitRepresentative> orbits = new OrbitCatalog("Orbits.txt", 6)
+				.getOrbitsOfOrder(6);
+		SymmetryCache cache = new SymmetryCache(16);
+		for (int round = 0; round < 2; round++) {
+			for (OrbitRepresentative g : orbits) {
+				AutomorphismGroup group = cache.get(g);
+				assertEquals(g.canonicalAutomorphisms().size(), group.size());
+				assertArrayEquals(g.canonicalAutomorphisms().orbitPartition(),
+						group.orbitPartition());
+				assertTrue(cache.size() <= 16);
+			}
+		}
+		assertEquals(2 * orbits.size(), cache.getHits() + cache.getMisses());
+	}
+
+	/**
+	 * A graph that was asked for again is passed over once by the clock, so
+	 * the next graph that was not is dropped instead.
+	 */
+	@Test
+	public void keepRecentlyUsed() throws IOException {
+		List<OrbitRepresentative> orbits = new OrbitCatalog("Orbits.txt", 5)
+				.getOrbitsOfOrder(5);
+		SymmetryCache cache = new SymmetryCache(4);
+		for (int i = 0; i < 4; i++) {
+			cache.get(orbits.get(i));
+		}
+		AutomorphismGroup first = cache.get(orbits.get(0));
+		assertEquals(1, cache.getHits());
+		cache.get(orbits.get(4));
+		assertEquals(4, cache.size());
+		assertSame(first, cache.get(orbits.get(0)));
+		assertEquals(2, cache.getHits());
+		cache.get(orbits.get(1));
+		assertEquals(2, cache.getHits());
+		assertEquals(6, cache.getMisses());
+	}
+}